@@ -0,0 +1,114 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows/sec parsing an in-memory DeliveryDPO file: the previous {@code BufferedReader} +
+ * {@code String.split} + header map approach against {@link CsvTokenizer}.
+ * <p>
+ * Run with {@code -prof gc} to compare allocation per row as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvParseBenchmark {
+
+    static final int ROWS = 200_000;
+
+    private byte[] file;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(ROWS * 48);
+        sb.append("SctiesSttlmTxId,ClntId,QtyORShrtQty,TckrSymb,ISIN\n");
+        for (int i = 0; i < ROWS; i++) {
+            sb.append("2025").append(100000000 + i).append(',')
+                    .append(10000000 + (i % 90000)).append(',')
+                    .append(i % 5000 + 1).append(',')
+                    .append("SYM").append(i % 1800).append(',')
+                    .append("INE").append(100000000 + (i % 1800) * 37).append('\n');
+        }
+        file = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void splitAndHeaderMap(Blackhole bh) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(file), StandardCharsets.UTF_8), 64 * 1024);
+        String[] headers = reader.readLine().split(",", -1);
+        Map<String, Integer> headerMap = new HashMap<>();
+        for (int i = 0; i < headers.length; i++) {
+            headerMap.put(headers[i].trim(), i);
+        }
+        DeliveryDpoRow row = new DeliveryDpoRow();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] cols = line.split(",", -1);
+            row.setSettlementNo(cols[headerMap.get("SctiesSttlmTxId")].trim());
+            row.setClntId(cols[headerMap.get("ClntId")].trim());
+            row.setQtyReceived(Integer.parseInt(cols[headerMap.get("QtyORShrtQty")].trim()));
+            row.setSecuritySymbol(cols[headerMap.get("TckrSymb")].trim());
+            row.setIsin(cols[headerMap.get("ISIN")].trim());
+            bh.consume(row);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void tokenizer(Blackhole bh) throws IOException {
+        CsvTokenizer csv = new CsvTokenizer(new ByteArrayInputStream(file));
+        csv.next();
+        int settlementCol = csv.indexOf("SctiesSttlmTxId");
+        int clntIdCol = csv.indexOf("ClntId");
+        int qtyCol = csv.indexOf("QtyORShrtQty");
+        int symbolCol = csv.indexOf("TckrSymb");
+        int isinCol = csv.indexOf("ISIN");
+        DeliveryDpoRow row = new DeliveryDpoRow();
+        while (csv.next()) {
+            row.setSettlementNo(csv.getString(settlementCol));
+            row.setClntId(csv.getString(clntIdCol));
+            row.setQtyReceived(csv.getInt(qtyCol));
+            row.setSecuritySymbol(csv.getString(symbolCol));
+            row.setIsin(csv.getString(isinCol));
+            bh.consume(row);
+        }
+    }
+
+    /** Only the quantity column, as the SHRT/auction style loaders that need one or two fields. */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long tokenizerQuantityOnly() throws IOException {
+        CsvTokenizer csv = new CsvTokenizer(new ByteArrayInputStream(file));
+        csv.next();
+        int qtyCol = csv.indexOf("QtyORShrtQty");
+        long total = 0;
+        while (csv.next()) {
+            total += csv.getInt(qtyCol);
+        }
+        return total;
+    }
+}
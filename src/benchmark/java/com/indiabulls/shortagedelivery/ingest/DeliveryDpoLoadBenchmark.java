@@ -0,0 +1,86 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows/sec of the COPY and JDBC batch writers against a local PostgreSQL.
+ * <p>
+ * Connection settings come from {@code -Dbench.jdbc.url}, {@code -Dbench.jdbc.user} and
+ * {@code -Dbench.jdbc.password} (defaults: localhost/postgres). Rows go into a temp table shaped
+ * like focus.short_delivery and every invocation is rolled back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DeliveryDpoLoadBenchmark {
+
+    static final int ROWS = 100_000;
+
+    @Param({"COPY", "BATCH"})
+    public DeliveryDpoBulkLoader.Mode mode;
+
+    @Param({"5000"})
+    public int batchSize;
+
+    private Connection conn;
+    private DeliveryDpoRow[] rows;
+
+    @Setup
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/postgres?reWriteBatchedInserts=true"),
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", "postgres"));
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TEMP TABLE short_delivery_bench (" +
+                    "settlement_no text, clnt_id text, qty_received_t1 integer, security_symbol text, isin text, " +
+                    "total_quantity integer, short_quantity integer)");
+        }
+        conn.setAutoCommit(false);
+
+        rows = new DeliveryDpoRow[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new DeliveryDpoRow("2025" + (100000000 + i), Integer.toString(10000000 + i % 90000),
+                    i % 5000 + 1, "SYM" + i % 1800, "INE" + (100000000 + i % 1800));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long load() throws SQLException {
+        try (DeliveryDpoWriter writer = DeliveryDpoBulkLoader.open(conn, "short_delivery_bench", mode, batchSize)) {
+            for (DeliveryDpoRow row : rows) {
+                writer.write(row);
+            }
+            return writer.finish();
+        } finally {
+            conn.rollback();
+        }
+    }
+}
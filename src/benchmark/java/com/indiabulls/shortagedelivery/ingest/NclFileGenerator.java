@@ -0,0 +1,192 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes synthetic gzipped NCL files (DeliveryDPO, SHRT and Auction) in the layout the loaders
+ * read, with the extra columns of the real files so row widths and gzip ratios are realistic.
+ * <p>
+ * Output is deterministic for a given seed. Clients, symbols and ISINs come from fixed pools
+ * ({@link #clientId}, {@link #symbol}, {@link #isin}) so a database can be seeded to match; symbol
+ * popularity is skewed, as a few scrips carry most of the obligations.
+ * <p>
+ * Run standalone to write one day's files under {@code <dir>/<dd-MMMM-yyyy>/stocks}:
+ * {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.indiabulls.shortagedelivery.ingest.NclFileGenerator
+ * -Dexec.args="<dir> [dpoRows] [yyyy-MM-dd]"}
+ */
+public class NclFileGenerator {
+
+    public enum FileType {
+        DPO("DeliveryDpo_NCL_CM_EquityT1_CM_08756_%s.csv.gz",
+                "TradDt,SctiesSttlmTxId,SttlmTp,ClrMmbId,ClntId,TckrSymb,SctySrs,ISIN,QtyORShrtQty,ValtnPric"),
+        SHRT("NCL_C_%s.csv.gz",
+                "Settlement Type,Settlement No,Member Code,Security Symbol,Series,ISIN,Short Quantity,Valuation Price"),
+        AUCTION("DeliveryDpo_NCL_CM_Auction_%s.csv.gz",
+                "TradDt,SctiesSttlmTxId,SttlmTp,ClrMmbId,ClntId,TckrSymb,SctySrs,ISIN,QtyORShrtQty,AuctnPric");
+
+        private final String namePattern;
+        private final String header;
+
+        FileType(String namePattern, String header) {
+            this.namePattern = namePattern;
+            this.header = header;
+        }
+
+        public String fileName(LocalDate date) {
+            return String.format(namePattern, date.format(DateTimeFormatter.BASIC_ISO_DATE));
+        }
+    }
+
+    private static final DateTimeFormatter TRADE_DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private final long seed;
+    private final int clients;
+    private final int symbols;
+
+    public NclFileGenerator(long seed, int clients, int symbols) {
+        this.seed = seed;
+        this.clients = clients;
+        this.symbols = symbols;
+    }
+
+    /** 90k clients over 1,800 scrips, roughly a normal trading day. */
+    public static NclFileGenerator standard() {
+        return new NclFileGenerator(42, 90_000, 1_800);
+    }
+
+    public static String clientId(int index) {
+        return Integer.toString(10_000_000 + index);
+    }
+
+    public static String symbol(int index) {
+        return "SYM" + index;
+    }
+
+    public static String isin(int index) {
+        return String.format("INE%06d01%d", index, index % 10);
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public int getSymbols() {
+        return symbols;
+    }
+
+    /** The whole file, gzipped, in memory. */
+    public byte[] gzip(FileType type, int rows, LocalDate date) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows * 24 + 1024);
+        write(type, rows, date, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the file under {@code dir} with the name the loaders look for.
+     *
+     * @return the file written
+     */
+    public Path write(Path dir, FileType type, int rows, LocalDate date) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(type.fileName(date));
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(type, rows, date, out);
+        }
+        return file;
+    }
+
+    /** Gzips {@code rows} data rows of {@code type} to {@code out}, leaving it open. */
+    public void write(FileType type, int rows, LocalDate date, OutputStream out) throws IOException {
+        Random random = new Random(seed * 31 + type.ordinal());
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+        Writer writer = new OutputStreamWriter(gzip, StandardCharsets.US_ASCII);
+        writer.write(type.header);
+        writer.write('\n');
+
+        String tradeDate = date.format(TRADE_DATE);
+        String settlement = date.format(DateTimeFormatter.ofPattern("yyyyDDD"));
+        StringBuilder line = new StringBuilder(128);
+        for (int i = 0; i < rows; i++) {
+            line.setLength(0);
+            int symbolIndex = skewedSymbol(random);
+            switch (type) {
+                case DPO:
+                case AUCTION:
+                    line.append(tradeDate).append(',')
+                            .append(settlement).append(1_000_000_000L + i).append(',')
+                            .append("N,08756,")
+                            .append(clientId(random.nextInt(clients))).append(',')
+                            .append(symbol(symbolIndex)).append(",EQ,")
+                            .append(isin(symbolIndex)).append(',')
+                            .append(quantity(random)).append(',')
+                            .append(price(random));
+                    break;
+                case SHRT:
+                    line.append("N,").append(settlement).append(",08756,")
+                            .append(symbol(symbolIndex)).append(",EQ,")
+                            .append(isin(symbolIndex)).append(',')
+                            .append(quantity(random)).append(',')
+                            .append(price(random));
+                    break;
+                default:
+                    throw new IllegalArgumentException(type.name());
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+        writer.flush();
+        gzip.finish();
+    }
+
+    /** Half the rows go to the first 5% of symbols. */
+    private int skewedSymbol(Random random) {
+        int hot = Math.max(1, symbols / 20);
+        return random.nextBoolean() ? random.nextInt(hot) : random.nextInt(symbols);
+    }
+
+    private static int quantity(Random random) {
+        // Mostly retail-sized lots with the occasional block
+        return random.nextInt(10) == 0 ? 1_000 + random.nextInt(50_000) : 1 + random.nextInt(500);
+    }
+
+    private static String price(Random random) {
+        int paise = 1_000 + random.nextInt(500_000);
+        int fraction = paise % 100;
+        return (paise / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: NclFileGenerator <dir> [dpoRows] [yyyy-MM-dd]");
+            System.exit(2);
+        }
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        LocalDate date = args.length > 2 ? LocalDate.parse(args[2]) : LocalDate.now();
+        Path dir = Paths.get(args[0], date.format(DateTimeFormatter.ofPattern("dd-MMMM-yyyy")), "stocks");
+
+        NclFileGenerator generator = standard();
+        // SHRT lists one line per short scrip; auctions settle a small share of the shortages
+        write(generator, dir, FileType.DPO, rows, date);
+        write(generator, dir, FileType.SHRT, Math.max(1, generator.getSymbols() / 4), date);
+        write(generator, dir, FileType.AUCTION, Math.max(1, rows / 100), date);
+    }
+
+    private static void write(NclFileGenerator generator, Path dir, FileType type, int rows, LocalDate date)
+            throws IOException {
+        Path file = generator.write(dir, type, rows, date);
+        System.out.println(file + ": " + rows + " rows, " + Files.size(file) + " bytes");
+    }
+}
@@ -0,0 +1,127 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Rows/sec reading gzipped DeliveryDPO, SHRT and Auction files from memory the way the loaders in
+ * {@code FtpCsvToPostgresService} do: the DPO file through {@link DeliveryDpoPipeline} into a writer
+ * that drops the rows, SHRT and Auction through gunzip and {@link CsvTokenizer} on one thread.
+ * <p>
+ * Files come from {@link NclFileGenerator}, so the rows are as wide as the real ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NclFileParseBenchmark {
+
+    static final int ROWS = 200_000;
+
+    private byte[] dpo;
+    private byte[] shrt;
+    private byte[] auction;
+    private DeliveryDpoPipeline pipeline;
+
+    @Setup
+    public void setUp() throws IOException {
+        NclFileGenerator generator = NclFileGenerator.standard();
+        LocalDate date = LocalDate.of(2025, 1, 15);
+        dpo = generator.gzip(NclFileGenerator.FileType.DPO, ROWS, date);
+        shrt = generator.gzip(NclFileGenerator.FileType.SHRT, ROWS, date);
+        auction = generator.gzip(NclFileGenerator.FileType.AUCTION, ROWS, date);
+        pipeline = new DeliveryDpoPipeline(16, 5000, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long deliveryDpo() throws IOException, SQLException {
+        return pipeline.load(new ByteArrayInputStream(dpo), new DiscardingWriter()).getRows();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Set<String> shrt() throws IOException {
+        try (CsvTokenizer csv = new CsvTokenizer(gunzip(shrt))) {
+            csv.next();
+            int symbolCol = csv.indexOf("Security Symbol");
+            Set<String> symbols = new LinkedHashSet<>();
+            while (csv.next()) {
+                symbols.add(csv.getString(symbolCol));
+            }
+            return symbols;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<AuctionRow> auction() throws IOException {
+        try (CsvTokenizer csv = new CsvTokenizer(gunzip(auction))) {
+            csv.next();
+            int clntIdCol = csv.indexOf("ClntId");
+            int qtyCol = csv.indexOf("QtyORShrtQty");
+            int symbolCol = csv.indexOf("TckrSymb");
+            int settlementCol = csv.indexOf("SctiesSttlmTxId");
+            List<AuctionRow> auctions = new ArrayList<>();
+            Set<String> clntIds = new HashSet<>();
+            while (csv.next()) {
+                if (csv.isEmpty(clntIdCol) || csv.isEmpty(qtyCol) || csv.isEmpty(symbolCol)) {
+                    continue;
+                }
+                String clntId = csv.getString(clntIdCol);
+                auctions.add(new AuctionRow(csv.getString(settlementCol), clntId, csv.getString(symbolCol),
+                        csv.getInt(qtyCol)));
+                clntIds.add(clntId);
+            }
+            return auctions;
+        }
+    }
+
+    private static InputStream gunzip(byte[] file) throws IOException {
+        // Same buffer as FtpDownloadStream
+        return new GZIPInputStream(new ByteArrayInputStream(file), 64 * 1024);
+    }
+
+    private static final class DiscardingWriter implements DeliveryDpoWriter {
+        private long rows;
+
+        @Override
+        public void write(DeliveryDpoRow row) {
+            rows++;
+        }
+
+        @Override
+        public long finish() {
+            return rows;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows/sec of the parallel DPO load for 1 to 8 writer connections against a local PostgreSQL,
+ * i.e. the scaling curve for {@code shortage.dpo.writers}.
+ * <p>
+ * Every invocation loads the rows into a fresh shared staging table
+ * ({@link ShortDeliveryMerger#createSharedStage}) that is dropped afterwards. Connection settings
+ * as for {@link DeliveryDpoLoadBenchmark}; pass them with {@code -jvmArgsAppend}. The curve flattens
+ * at the database's CPU or disk limit, so run it against a server sized like production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelDpoLoadBenchmark {
+
+    static final int ROWS = 500_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int writers;
+
+    @Param({"COPY"})
+    public DeliveryDpoBulkLoader.Mode mode;
+
+    @Param({"5000"})
+    public int chunkRows;
+
+    private final ShortDeliveryMerger merger = new ShortDeliveryMerger();
+    private HikariDataSource dataSource;
+    private DeliveryDpoRow[] rows;
+    private String table;
+
+    @Setup
+    public void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getProperty("bench.jdbc.url",
+                "jdbc:postgresql://localhost:5432/postgres?reWriteBatchedInserts=true"));
+        config.setUsername(System.getProperty("bench.jdbc.user", "postgres"));
+        config.setPassword(System.getProperty("bench.jdbc.password", "postgres"));
+        config.setMaximumPoolSize(writers + 1);
+        dataSource = new HikariDataSource(config);
+
+        rows = new DeliveryDpoRow[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new DeliveryDpoRow("2025" + (100000000 + i), Integer.toString(10000000 + i % 90000),
+                    i % 5000 + 1, "SYM" + i % 1800, "INE" + (100000000 + i % 1800));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createStage() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("CREATE SCHEMA IF NOT EXISTS focus");
+            table = merger.createSharedStage(conn);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropStage() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            merger.dropSharedStage(conn, table);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long load() throws SQLException {
+        try (DeliveryDpoWriter writer = DeliveryDpoBulkLoader.openParallel(dataSource, table, mode, 5000,
+                writers, chunkRows)) {
+            for (DeliveryDpoRow row : rows) {
+                writer.write(row);
+            }
+            return writer.finish();
+        }
+    }
+}
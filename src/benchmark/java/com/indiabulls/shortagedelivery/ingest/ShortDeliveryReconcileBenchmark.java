@@ -0,0 +1,114 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for one {@link ShortDeliveryReconciler#reconcile} of a SHRT file's symbols against
+ * {@code rows} rows of focus.short_delivery, {@code shortPercent}% of which are short.
+ * <p>
+ * Connection settings as in {@link DeliveryDpoLoadBenchmark}; point them at a scratch database.
+ * Everything runs in one transaction that is rolled back at the end (the schema and table are
+ * created in it if missing), and each reconcile is undone through a savepoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ShortDeliveryReconcileBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"2", "20"})
+    public int shortPercent;
+
+    private Connection conn;
+    private List<String> symbols;
+    private final ShortDeliveryReconciler reconciler = new ShortDeliveryReconciler();
+
+    @Setup
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/postgres?reWriteBatchedInserts=true"),
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", "postgres"));
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE SCHEMA IF NOT EXISTS focus");
+            st.execute("CREATE TABLE IF NOT EXISTS focus.short_delivery (" +
+                    "settlement_no text, clnt_id text, qty_received_t1 integer, security_symbol text, isin text, " +
+                    "total_quantity integer, short_quantity integer)");
+        }
+
+        NclFileGenerator generator = NclFileGenerator.standard();
+        Random random = new Random(42);
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO focus.short_delivery " +
+                "(settlement_no, clnt_id, qty_received_t1, security_symbol, isin, total_quantity) " +
+                "VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                int symbol = random.nextInt(generator.getSymbols());
+                int total = 1 + random.nextInt(500);
+                ps.setString(1, "bench" + i);
+                ps.setString(2, NclFileGenerator.clientId(random.nextInt(generator.getClients())));
+                ps.setInt(3, random.nextInt(100) < shortPercent ? random.nextInt(total) : total);
+                ps.setString(4, NclFileGenerator.symbol(symbol));
+                ps.setString(5, NclFileGenerator.isin(symbol));
+                ps.setInt(6, total);
+                ps.addBatch();
+                if (i % 5000 == 4999) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute("ANALYZE focus.short_delivery");
+        }
+
+        // A SHRT file lists about a quarter of the scrips
+        symbols = new ArrayList<>();
+        for (int i = 0; i < generator.getSymbols(); i += 4) {
+            symbols.add(NclFileGenerator.symbol(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        conn.rollback();
+        conn.close();
+    }
+
+    @Benchmark
+    public int reconcile() throws SQLException {
+        Savepoint savepoint = conn.setSavepoint();
+        try {
+            return reconciler.reconcile(conn, symbols).size();
+        } finally {
+            conn.rollback(savepoint);
+        }
+    }
+}
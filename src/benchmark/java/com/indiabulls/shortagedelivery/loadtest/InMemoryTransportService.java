@@ -0,0 +1,79 @@
+package com.indiabulls.shortagedelivery.loadtest;
+
+import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageEncoder;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRequest;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationTransportService;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stands in for the RabbitMQ transport: serializes each message as the real one does, waits
+ * {@code publishLatencyMicros} to model a broker round trip, and counts what it accepted.
+ */
+public class InMemoryTransportService implements NotificationTransportService {
+
+    private final NotificationMessageEncoder encoder;
+    private final long publishLatencyNanos;
+    private final Map<String, LongAdder> messagesByRoute = new ConcurrentHashMap<>();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLong firstSendNanos = new AtomicLong();
+    private volatile long lastSendNanos;
+
+    public InMemoryTransportService(NotificationMessageEncoder encoder, long publishLatencyMicros) {
+        this.encoder = encoder;
+        this.publishLatencyNanos = TimeUnit.MICROSECONDS.toNanos(publishLatencyMicros);
+    }
+
+    @Override
+    public boolean send(String routeName, NotificationMessageRequest<?> notificationMessageRequest) {
+        firstSendNanos.compareAndSet(0, System.nanoTime());
+        byte[] body;
+        try {
+            body = encoder.encode(notificationMessageRequest);
+        } catch (IOException e) {
+            return false;
+        }
+        if (publishLatencyNanos > 0) {
+            LockSupport.parkNanos(publishLatencyNanos);
+        }
+        messagesByRoute.computeIfAbsent(routeName, r -> new LongAdder()).increment();
+        messages.increment();
+        bytes.add(body.length);
+        lastSendNanos = System.nanoTime();
+        return true;
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public Map<String, Long> getMessagesByRoute() {
+        Map<String, Long> counts = new TreeMap<>();
+        messagesByRoute.forEach((route, count) -> counts.put(route, count.sum()));
+        return counts;
+    }
+
+    /** When the first message arrived, in ms since {@code startNanos}; 0 if none did. */
+    public long getFirstSendMillis(long startNanos) {
+        long first = firstSendNanos.get();
+        return first == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(first - startNanos);
+    }
+
+    /** When the last message arrived, in ms since {@code startNanos}; 0 if none did. */
+    public long getLastSendMillis(long startNanos) {
+        long last = lastSendNanos;
+        return last == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(last - startNanos);
+    }
+}
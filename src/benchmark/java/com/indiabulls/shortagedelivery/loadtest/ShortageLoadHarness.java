@@ -0,0 +1,311 @@
+package com.indiabulls.shortagedelivery.loadtest;
+
+import com.indiabulls.shortagedelivery.ShortagedeliveryApplication;
+import com.indiabulls.shortagedelivery.ingest.CsvTokenizer;
+import com.indiabulls.shortagedelivery.ingest.NclFileGenerator;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageEncoder;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboxRelay;
+import com.indiabulls.shortagedelivery.scheduler.JobDagEngine;
+import com.indiabulls.shortagedelivery.scheduler.JobRun;
+import com.indiabulls.shortagedelivery.scheduler.ShortageDeliveryScheduler;
+import com.indiabulls.shortagedelivery.scheduler.StepResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.Listener;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs the scheduled shortage cycle end to end at several sizes, against stand-ins for everything
+ * outside the application, and reports per-step latency, rows/sec and messages/sec.
+ * <p>
+ * DPO rows/sec is over the dpo step (download, staging, merge and totals); messages/sec is over the
+ * time the outbox relay spent in batches ({@code shortage.outbox.batch}), since the auction
+ * messages are published while the DPO file is still loading.
+ * <p>
+ * For every scale (DeliveryDPO rows) the harness:
+ * <ol>
+ *   <li>writes today's DPO, SHRT and Auction files with {@link NclFileGenerator} and serves them
+ *       from an embedded FTP server;</li>
+ *   <li>empties the focus tables of a local PostgreSQL and seeds {@code cust_mst} with every
+ *       client and {@code trxn_table_class} with the obligations of the DPO rows, about
+ *       {@code harness.short-percent}% of them more than was delivered;</li>
+ *   <li>boots the application against both, with {@link InMemoryTransportService} in place of
+ *       RabbitMQ ({@code notification.transport=memory}) and the cron trigger disabled;</li>
+ *   <li>calls {@link ShortageDeliveryScheduler#runScheduledJobs()}, waits for the cycle and for the
+ *       outbox to drain, and prints the report.</li>
+ * </ol>
+ * The tables are emptied, so point it at a scratch database only. Run with
+ * {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.indiabulls.shortagedelivery.loadtest.ShortageLoadHarness
+ * -Dexec.args="10000 100000 1000000"}, with {@code -Dbench.jdbc.url/user/password} as for the
+ * benchmarks and {@code -Dharness.publish-latency-us} to model broker latency. Any application
+ * property can be overridden with {@code -D}.
+ */
+public class ShortageLoadHarness {
+
+    private static final String FTP_USER = "harness";
+    private static final String FTP_PASS = "harness";
+    private static final String BASE_PATH = "/ncl";
+    private static final long TIMEOUT_MINUTES = 60;
+
+    private final String jdbcUrl = System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/postgres");
+    private final String jdbcUser = System.getProperty("bench.jdbc.user", "postgres");
+    private final String jdbcPassword = System.getProperty("bench.jdbc.password", "postgres");
+    private final int shortPercent = Integer.getInteger("harness.short-percent", 2);
+    private final long publishLatencyMicros = Long.getLong("harness.publish-latency-us", 0);
+    private final NclFileGenerator generator = NclFileGenerator.standard();
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> scales = new ArrayList<>();
+        for (String arg : args) {
+            scales.add(Integer.parseInt(arg.replace("_", "")));
+        }
+        if (scales.isEmpty()) {
+            Collections.addAll(scales, 10_000, 100_000, 1_000_000);
+        }
+
+        ShortageLoadHarness harness = new ShortageLoadHarness();
+        List<String> summary = new ArrayList<>();
+        Path home = Files.createTempDirectory("shortage-harness");
+        FtpServer ftpServer = null;
+        try {
+            ListenerFactory listenerFactory = new ListenerFactory();
+            listenerFactory.setPort(0);
+            Listener listener = listenerFactory.createListener();
+            ftpServer = startFtpServer(home, listener);
+            for (int rows : scales) {
+                summary.add(harness.run(rows, home, listener.getPort()));
+            }
+        } finally {
+            if (ftpServer != null) {
+                ftpServer.stop();
+            }
+            deleteRecursively(home);
+        }
+
+        System.out.println();
+        System.out.println(String.format("%10s %12s %12s %10s %12s %12s %12s",
+                "dpo rows", "cycle ms", "dpo rows/s", "messages", "messages/s", "drained ms", "outcome"));
+        summary.forEach(System.out::println);
+    }
+
+    /** Runs one cycle over {@code rows} DPO rows and returns its summary line. */
+    private String run(int rows, Path home, int ftpPort) throws Exception {
+        LocalDate today = LocalDate.now();
+        Path stocks = home.resolve(BASE_PATH.substring(1))
+                .resolve(today.format(DateTimeFormatter.ofPattern("dd-MMMM-yyyy")))
+                .resolve("stocks");
+        Path dpoFile = generator.write(stocks, NclFileGenerator.FileType.DPO, rows, today);
+        generator.write(stocks, NclFileGenerator.FileType.SHRT, Math.max(1, generator.getSymbols() / 4), today);
+        int auctionRows = Math.max(1, rows / 100);
+        generator.write(stocks, NclFileGenerator.FileType.AUCTION, auctionRows, today);
+
+        long seedStart = System.nanoTime();
+        int shortRows = seedDatabase(dpoFile);
+        System.out.println(String.format("%n=== %,d DPO rows, %,d auction rows: seeded %,d obligations (%,d short) and %,d contacts in %d ms",
+                rows, auctionRows, rows, shortRows, generator.getClients(), millisSince(seedStart)));
+
+        InMemoryTransportService transport = new InMemoryTransportService(
+                new NotificationMessageEncoder(Jackson2ObjectMapperBuilder.json().build()), publishLatencyMicros);
+        try (ConfigurableApplicationContext context = boot(ftpPort, transport)) {
+            ShortageDeliveryScheduler scheduler = context.getBean(ShortageDeliveryScheduler.class);
+            JobDagEngine engine = context.getBean(JobDagEngine.class);
+            OutboxRelay relay = context.getBean(OutboxRelay.class);
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+
+            long start = System.nanoTime();
+            scheduler.runScheduledJobs();
+            JobRun run = engine.history().get(0).getCompletion().get(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            awaitDrained(relay);
+            long drainedMillis = millisSince(start);
+
+            for (StepResult step : run.getSteps().values()) {
+                System.out.println(String.format("  %-8s %-9s %8d ms  %s",
+                        step.getName(), step.getStatus(), step.getDurationMillis(), step.getMessage()));
+            }
+            long dpoMillis = run.getSteps().get("dpo").getDurationMillis();
+            long messages = transport.getMessages();
+            long relayMillis = (long) meterRegistry.get("shortage.outbox.batch").timer().totalTime(TimeUnit.MILLISECONDS);
+            System.out.println(String.format("  outbox   %s, published %,d messages (%,d bytes) by route %s "
+                            + "between %d and %d ms, relay busy %d ms",
+                    relay.statusCounts(), messages, transport.getBytes(), transport.getMessagesByRoute(),
+                    transport.getFirstSendMillis(start), transport.getLastSendMillis(start), relayMillis));
+
+            return String.format("%,10d %,12d %,12d %,10d %,12d %,12d %12s",
+                    rows, run.getTotalMillis(), perSecond(rows, dpoMillis), messages,
+                    perSecond(messages, relayMillis), drainedMillis,
+                    run.isSucceeded() ? "succeeded" : "FAILED");
+        }
+    }
+
+    private ConfigurableApplicationContext boot(int ftpPort, InMemoryTransportService transport) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.username", jdbcUser);
+        properties.put("spring.datasource.password", jdbcPassword);
+        properties.put("ftp.server", "127.0.0.1");
+        properties.put("ftp.port", String.valueOf(ftpPort));
+        properties.put("ftp.user", FTP_USER);
+        properties.put("ftp.pass", FTP_PASS);
+        properties.put("ftp.base-path", BASE_PATH);
+        properties.put("notification.transport", "memory");
+        properties.put("shortagedelivery.scheduler.cron", "-");
+        properties.put("shortage.outbox.poll-interval-ms", "500");
+        properties.put("spring.jpa.show-sql", "false");
+        // The loaders log every shortage and mismatch at INFO; keep the console to the report
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.apache.ftpserver", "ERROR");
+
+        // As system properties they override application.properties; ones given with -D are kept
+        properties.forEach((name, value) -> {
+            if (System.getProperty(name) == null) {
+                System.setProperty(name, value);
+            }
+        });
+        return new SpringApplicationBuilder(ShortagedeliveryApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(context -> context.getBeanFactory().registerSingleton("inMemoryTransport", transport))
+                .run();
+    }
+
+    /**
+     * Empties the shortage tables and seeds contacts and obligations for the DPO file.
+     *
+     * @return the number of obligations larger than what was delivered
+     */
+    private int seedDatabase(Path dpoFile) throws SQLException, IOException {
+        try (Connection conn = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword);
+             Statement st = conn.createStatement()) {
+            st.execute("CREATE SCHEMA IF NOT EXISTS focus");
+            st.execute("CREATE TABLE IF NOT EXISTS focus.short_delivery (settlement_no text, clnt_id text, " +
+                    "qty_received_t1 integer, security_symbol text, isin text, total_quantity integer, short_quantity integer)");
+            st.execute("CREATE TABLE IF NOT EXISTS focus.trxn_table_class (settlement_no text, isin text, " +
+                    "party_cd text, trn_qty integer)");
+            st.execute("CREATE TABLE IF NOT EXISTS focus.cust_mst (party_cd text, email_no text, mobile_no text)");
+            for (String table : new String[]{"short_delivery", "trxn_table_class", "cust_mst", "trxn_qty_summary",
+                    "dpo_ingestion_ledger", "notification_state", "notification_outbox"}) {
+                // The last four only exist once the migrations have run
+                st.execute("DO $$ BEGIN IF to_regclass('focus." + table + "') IS NOT NULL THEN " +
+                        "TRUNCATE focus." + table + "; END IF; END $$");
+            }
+
+            try (Writer out = copyIn(conn, "COPY focus.cust_mst (party_cd, email_no, mobile_no) FROM STDIN")) {
+                for (int i = 0; i < generator.getClients(); i++) {
+                    String clntId = NclFileGenerator.clientId(i);
+                    out.append('C').append(clntId).append('\t')
+                            .append("client").append(clntId).append("@example.com\t")
+                            .append("9").append(String.valueOf(800_000_000 + i)).append('\n');
+                }
+            }
+
+            int shortRows = 0;
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(dpoFile), 64 * 1024);
+                 CsvTokenizer csv = new CsvTokenizer(in);
+                 Writer out = copyIn(conn, "COPY focus.trxn_table_class (settlement_no, isin, party_cd, trn_qty) FROM STDIN")) {
+                csv.next();
+                int settlementCol = csv.indexOf("SctiesSttlmTxId");
+                int clntIdCol = csv.indexOf("ClntId");
+                int qtyCol = csv.indexOf("QtyORShrtQty");
+                int isinCol = csv.indexOf("ISIN");
+                int shortEvery = shortPercent > 0 ? Math.max(1, 100 / shortPercent) : Integer.MAX_VALUE;
+                while (csv.next()) {
+                    int delivered = csv.getInt(qtyCol);
+                    int obligation = delivered;
+                    if (csv.getRowNumber() % shortEvery == 0) {
+                        obligation += 1 + delivered / 2;
+                        shortRows++;
+                    }
+                    out.append(csv.get(settlementCol)).append('\t')
+                            .append(csv.get(isinCol)).append('\t')
+                            .append('C').append(csv.get(clntIdCol)).append('\t')
+                            .append(String.valueOf(obligation)).append('\n');
+                }
+            }
+            st.execute("ANALYZE focus.cust_mst");
+            st.execute("ANALYZE focus.trxn_table_class");
+            return shortRows;
+        }
+    }
+
+    private static Writer copyIn(Connection conn, String sql) throws SQLException {
+        return new OutputStreamWriter(new PGCopyOutputStream(conn.unwrap(PGConnection.class), sql, 1 << 16),
+                StandardCharsets.UTF_8);
+    }
+
+    /** Waits until the relay has published or given up on every outbox row. */
+    private static void awaitDrained(OutboxRelay relay) throws SQLException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(TIMEOUT_MINUTES);
+        while (System.nanoTime() < deadline) {
+            Map<String, Long> counts = relay.statusCounts();
+            if (counts.getOrDefault("PENDING", 0L) == 0 && counts.getOrDefault("SENDING", 0L) == 0) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("Outbox not drained after " + TIMEOUT_MINUTES + " minutes");
+    }
+
+    private static FtpServer startFtpServer(Path home, Listener listener) throws Exception {
+        BaseUser user = new BaseUser();
+        user.setName(FTP_USER);
+        user.setPassword(FTP_PASS);
+        user.setHomeDirectory(home.toString());
+        UserManager userManager = new PropertiesUserManagerFactory().createUserManager();
+        userManager.save(user);
+
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        serverFactory.addListener("default", listener);
+        serverFactory.setUserManager(userManager);
+        FtpServer server = serverFactory.createServer();
+        server.start();
+        return server;
+    }
+
+    private static long perSecond(long count, long millis) {
+        return millis <= 0 ? 0 : count * 1000 / millis;
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
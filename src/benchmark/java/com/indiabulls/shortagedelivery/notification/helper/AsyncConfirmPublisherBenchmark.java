@@ -0,0 +1,78 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.rabbitmq.client.AMQP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages/sec through {@link AsyncConfirmPublisher} against {@link InMemoryConfirmChannel},
+ * which confirms each publish after a simulated broker latency.
+ * <p>
+ * {@code maxOutstanding=1} is the publish-then-wait-for-confirm behaviour; larger windows show
+ * what asynchronous confirms buy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AsyncConfirmPublisherBenchmark {
+
+    static final int MESSAGES = 10_000;
+
+    private static final AMQP.BasicProperties PROPS = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .build();
+
+    @Param({"1", "100", "1000"})
+    public int maxOutstanding;
+
+    @Param({"500"})
+    public int ackDelayMicros;
+
+    private InMemoryConfirmChannel broker;
+    private AsyncConfirmPublisher publisher;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = InMemoryConfirmChannel.autoAck(ackDelayMicros, TimeUnit.MICROSECONDS);
+        publisher = new AsyncConfirmPublisher(broker.channel(), "bench", 10_000, 100, maxOutstanding, 3);
+        body = ("{\"receivers\":[\"client@example.com\"],\"templateName\":\"shortage_email\","
+                + "\"templateDataJson\":{\"SYMBOL\":\"RELIANCE\",\"QTY\":25}}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        publisher.close();
+        broker.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long publishAndConfirm() throws InterruptedException {
+        for (int i = 0; i < MESSAGES; i++) {
+            publisher.submit("shortage_email", PROPS, body);
+        }
+        if (!publisher.flush(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("confirms did not arrive");
+        }
+        return publisher.getConfirmed();
+    }
+}
@@ -0,0 +1,100 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.indiabulls.shortagedelivery.ingest.NclFileGenerator;
+import com.indiabulls.shortagedelivery.notification.dto.ShortageEmailTemplateData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages/sec serializing a {@code NotificationMessageRequest<ShortageEmailTemplateData>} with an
+ * {@link ObjectMapper} configured like the application's: to bytes straight from the mapper and
+ * through {@link NotificationMessageEncoder} as {@link RabbitMqTransportService} publishes it, to a
+ * String as the outbox stores it, and back as the outbox relay reads it.
+ * <p>
+ * {@code receivers=1} is a single email; larger values are coalesced messages with per-receiver
+ * template data, as {@link NotificationBatcher} builds them. Run with {@code -prof gc} to compare
+ * bytes allocated per message ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NotificationSerializationBenchmark {
+
+    @Param({"1", "100"})
+    public int receivers;
+
+    private ObjectMapper objectMapper;
+    private NotificationMessageEncoder encoder;
+    private NotificationMessageRequest<ShortageEmailTemplateData> request;
+    private String json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        encoder = new NotificationMessageEncoder(objectMapper);
+
+        List<String> emails = new ArrayList<>(receivers);
+        Map<String, ShortageEmailTemplateData> receiverData = new LinkedHashMap<>();
+        for (int i = 0; i < receivers; i++) {
+            String email = "client" + NclFileGenerator.clientId(i) + "@example.com";
+            emails.add(email);
+            if (i > 0) {
+                receiverData.put(email, new ShortageEmailTemplateData(NclFileGenerator.symbol(i), 10 + i));
+            }
+        }
+        request = NotificationMessageRequest.<ShortageEmailTemplateData>builder()
+                .receivers(emails)
+                .sender("alerts@example.com")
+                .subject("Shortage in delivery of securities")
+                .templateName("shortage_email_template")
+                .templateDataJson(new ShortageEmailTemplateData(NclFileGenerator.symbol(0), 10))
+                .receiverTemplateData(receiverData)
+                .dataFields(NotificationSpecificFields.builder()
+                        .emailDisplayName("Security Shortage")
+                        .build())
+                .build();
+        json = objectMapper.writeValueAsString(request);
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return encoder.encode(request);
+    }
+
+    @Benchmark
+    public String toOutboxPayload() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(request);
+    }
+
+    @Benchmark
+    public NotificationMessageRequest<?> fromOutboxPayload() throws JsonProcessingException {
+        return objectMapper.readValue(json, NotificationMessageRequest.class);
+    }
+}
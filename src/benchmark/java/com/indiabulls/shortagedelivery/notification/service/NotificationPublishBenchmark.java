@@ -0,0 +1,121 @@
+package com.indiabulls.shortagedelivery.notification.service;
+
+import com.indiabulls.shortagedelivery.notification.dto.PushNotificationRequest;
+import com.indiabulls.shortagedelivery.notification.dto.ShortageEmailTemplateData;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageEncoder;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRequest;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationSender;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationTransportService;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboundNotification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages/sec building notification requests in {@link EmailNotificationService} and
+ * {@link PushNotificationService}, and publishing them through a {@link NotificationTransportService}
+ * that never reaches a broker.
+ * <p>
+ * {@code transport=noop} accepts every message, keeping a reference so the request is really built,
+ * and the publish benchmarks measure composing and dispatch alone; {@code transport=serializing}
+ * also encodes the JSON body with {@link NotificationMessageEncoder}, as {@code RabbitMqTransportService}
+ * does before handing it to a channel. Pushes are published as the outbox relay does it, {@code transport.send(composePush(...))}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NotificationPublishBenchmark {
+
+    @Param({"noop", "serializing"})
+    public String transport;
+
+    private NotificationTransportService transportService;
+    private EmailNotificationService emailService;
+    private PushNotificationService pushService;
+    private NotificationMessageRequest<ShortageEmailTemplateData> emailRequest;
+    private PushNotificationRequest pushRequest;
+    private volatile Object lastPublished;
+
+    @Setup
+    public void setUp() {
+        NotificationMessageEncoder encoder = new NotificationMessageEncoder(Jackson2ObjectMapperBuilder.json().build());
+        transportService = "serializing".equals(transport)
+                ? (route, request) -> encode(encoder, request)
+                : (route, request) -> {
+                    lastPublished = request;
+                    return true;
+                };
+
+        NotificationSender sender = new NotificationSender(transportService);
+        ReflectionTestUtils.setField(sender, "emailRoute", "notification.email");
+        ReflectionTestUtils.setField(sender, "emailSender", "alerts@example.com");
+        ReflectionTestUtils.setField(sender, "emailSubject", "Shortage in delivery of securities");
+        emailService = new EmailNotificationService(sender);
+        ReflectionTestUtils.setField(emailService, "emailSender", "alerts@example.com");
+        ReflectionTestUtils.setField(emailService, "emailSubject", "Shortage in delivery of securities");
+        pushService = new PushNotificationService(transportService);
+        ReflectionTestUtils.setField(pushService, "pushRoute", "notification.push");
+
+        emailRequest = NotificationMessageRequest.<ShortageEmailTemplateData>builder()
+                .receivers(Collections.singletonList("client10000001@example.com"))
+                .templateName("shortage_email_template")
+                .templateDataJson(new ShortageEmailTemplateData("SYM1", 25))
+                .build();
+
+        Map<String, Object> templateData = new HashMap<>();
+        templateData.put("SYMBOL", "SYM1");
+        templateData.put("QTY", 25);
+        pushRequest = new PushNotificationRequest();
+        pushRequest.setReceivers(Collections.singletonList("10000001"));
+        pushRequest.setTemplateName("shortage_push_template");
+        pushRequest.setTemplateDataJson(templateData);
+    }
+
+    @Benchmark
+    public OutboundNotification composeEmail() {
+        return emailService.composeEmailNotification(emailRequest);
+    }
+
+    @Benchmark
+    public OutboundNotification composePush() {
+        return pushService.composePush(pushRequest);
+    }
+
+    @Benchmark
+    public boolean publishEmail() {
+        return emailService.sendEmailNotification(emailRequest);
+    }
+
+    @Benchmark
+    public boolean publishPush() {
+        OutboundNotification push = pushService.composePush(pushRequest);
+        return transportService.send(push.getRoute(), push.getRequest());
+    }
+
+    private static boolean encode(NotificationMessageEncoder encoder, NotificationMessageRequest<?> request) {
+        try {
+            return encoder.encode(request).length > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
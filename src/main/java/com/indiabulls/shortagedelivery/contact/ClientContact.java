@@ -0,0 +1,17 @@
+package com.indiabulls.shortagedelivery.contact;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Email and mobile of a client from focus.cust_mst (party_cd = "C" + clntId).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientContact {
+    private String clntId;
+    private String email;
+    private String mobile;
+}
@@ -0,0 +1,118 @@
+package com.indiabulls.shortagedelivery.contact;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded in-process cache of cust_mst contacts keyed by client id.
+ * <p>
+ * Entries expire {@code shortage.contacts.cache.ttl} after they were loaded and the least
+ * recently used ones are evicted above {@code shortage.contacts.cache.max-size}. Clients with no
+ * cust_mst row are cached as well, for {@code shortage.contacts.cache.negative-ttl} only, so a
+ * contact added during the day is picked up by the next run.
+ */
+@Component
+public class ClientContactCache {
+
+    /** Marker for a client known to have no cust_mst row. */
+    private static final ClientContact NO_CONTACT = new ClientContact();
+
+    private final Cache<String, ClientContact> cache;
+
+    @Autowired
+    public ClientContactCache(@Value("${shortage.contacts.cache.max-size:200000}") long maxSize,
+                              @Value("${shortage.contacts.cache.ttl:8h}") Duration ttl,
+                              @Value("${shortage.contacts.cache.negative-ttl:5m}") Duration negativeTtl) {
+        this(maxSize, ttl, negativeTtl, Ticker.systemTicker());
+    }
+
+    ClientContactCache(long maxSize, Duration ttl, Duration negativeTtl, Ticker ticker) {
+        long ttlNanos = ttl.toNanos();
+        long negativeTtlNanos = negativeTtl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, ClientContact>() {
+                    @Override
+                    public long expireAfterCreate(String clntId, ClientContact contact, long currentTime) {
+                        return contact == NO_CONTACT ? negativeTtlNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clntId, ClientContact contact, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(clntId, contact, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clntId, ClientContact contact, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Copies the cached contacts of {@code clntIds} into {@code found} and returns the ids that
+     * still have to be loaded.
+     */
+    public Set<String> lookup(Collection<String> clntIds, Map<String, ClientContact> found) {
+        Map<String, ClientContact> cached = cache.getAllPresent(clntIds);
+        Set<String> missing = new LinkedHashSet<>(clntIds);
+        missing.removeAll(cached.keySet());
+        cached.forEach((clntId, contact) -> {
+            if (contact != NO_CONTACT) {
+                found.put(clntId, contact);
+            }
+        });
+        return missing;
+    }
+
+    /**
+     * Caches the contacts loaded for {@code requested}; requested ids without a contact are
+     * remembered as having none.
+     */
+    public void putAll(Collection<String> requested, Map<String, ClientContact> loaded) {
+        Map<String, ClientContact> entries = new HashMap<>(loaded);
+        for (String clntId : requested) {
+            entries.putIfAbsent(clntId, NO_CONTACT);
+        }
+        cache.putAll(entries);
+    }
+
+    public void put(ClientContact contact) {
+        cache.put(contact.getClntId(), contact);
+    }
+
+    public void invalidate(String clntId) {
+        cache.invalidate(clntId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
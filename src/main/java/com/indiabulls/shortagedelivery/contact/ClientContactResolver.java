@@ -0,0 +1,117 @@
+package com.indiabulls.shortagedelivery.contact;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Looks up contacts for many clients at once.
+ * <p>
+ * Contacts are served from the {@link ClientContactCache} first. The remaining distinct client
+ * ids are sent in chunks of {@code shortage.contacts.chunk-size} as a {@code party_cd = ANY(?)}
+ * array, so each client is fetched at most once per call however many shortage or auction rows
+ * it has.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClientContactResolver {
+
+    private static final String CONTACT_SQL =
+            "SELECT party_cd, email_no, mobile_no FROM focus.cust_mst WHERE party_cd = ANY (?)";
+
+    private static final String WARM_UP_SQL =
+            "SELECT c.party_cd, c.email_no, c.mobile_no FROM focus.cust_mst c " +
+                    "WHERE c.party_cd IN (SELECT 'C' || sd.clnt_id FROM focus.short_delivery sd " +
+                    "WHERE sd.short_quantity > 0)";
+
+    private final ClientContactCache contactCache;
+
+    @Value("${shortage.contacts.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * @return contacts keyed by client id; clients without a cust_mst row are absent
+     */
+    public Map<String, ClientContact> resolve(Connection conn, Collection<String> clntIds) throws SQLException {
+        Map<String, ClientContact> contacts = new HashMap<>();
+        Set<String> missing = contactCache.lookup(new LinkedHashSet<>(clntIds), contacts);
+        if (!missing.isEmpty()) {
+            Map<String, ClientContact> loaded = fetch(conn, missing);
+            contactCache.putAll(missing, loaded);
+            contacts.putAll(loaded);
+        }
+        return contacts;
+    }
+
+    /**
+     * Loads the contacts of the clients with a shortage in focus.short_delivery, the ones the
+     * shortage notifications go to, into the cache in one query.
+     *
+     * @return number of contacts cached
+     */
+    public int warmUp(Connection conn) throws SQLException {
+        int loaded = 0;
+        try (PreparedStatement ps = conn.prepareStatement(WARM_UP_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                contactCache.put(toContact(rs));
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private Map<String, ClientContact> fetch(Connection conn, Collection<String> clntIds) throws SQLException {
+        Map<String, ClientContact> contacts = new HashMap<>();
+        List<String> partyCodes = new ArrayList<>(chunkSize);
+
+        try (PreparedStatement ps = conn.prepareStatement(CONTACT_SQL)) {
+            for (String clntId : clntIds) {
+                partyCodes.add("C" + clntId);
+                if (partyCodes.size() == chunkSize) {
+                    fetchChunk(conn, ps, partyCodes, contacts);
+                    partyCodes.clear();
+                }
+            }
+            if (!partyCodes.isEmpty()) {
+                fetchChunk(conn, ps, partyCodes, contacts);
+            }
+        }
+        return contacts;
+    }
+
+    private void fetchChunk(Connection conn, PreparedStatement ps, List<String> partyCodes,
+                            Map<String, ClientContact> contacts) throws SQLException {
+        Array partyArray = conn.createArrayOf("text", partyCodes.toArray());
+        try {
+            ps.setArray(1, partyArray);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ClientContact contact = toContact(rs);
+                    contacts.putIfAbsent(contact.getClntId(), contact);
+                }
+            }
+        } finally {
+            partyArray.free();
+        }
+    }
+
+    private static ClientContact toContact(ResultSet rs) throws SQLException {
+        // party_cd is the client id prefixed with "C"
+        String clntId = rs.getString("party_cd").substring(1);
+        return new ClientContact(clntId, rs.getString("email_no"), rs.getString("mobile_no"));
+    }
+}
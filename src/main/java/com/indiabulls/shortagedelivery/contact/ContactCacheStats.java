@@ -0,0 +1,19 @@
+package com.indiabulls.shortagedelivery.contact;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the {@link ClientContactCache} counters.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactCacheStats {
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+}
@@ -0,0 +1,32 @@
+package com.indiabulls.shortagedelivery.contact;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A short_delivery row with a positive shortage, joined with the client's contact details.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShortageContact {
+    @JsonProperty("clnt_id")
+    private String clntId;
+
+    @JsonProperty("security_symbol")
+    private String securitySymbol;
+
+    @JsonProperty("settlement_no")
+    private String settlementNo;
+
+    @JsonProperty("short_quantity")
+    private int shortQuantity;
+
+    @JsonProperty("email_no")
+    private String email;
+
+    @JsonProperty("mobile_no")
+    private String mobile;
+}
@@ -0,0 +1,45 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.indiabulls.shortagedelivery.contact.ClientContactCache;
+import com.indiabulls.shortagedelivery.contact.ContactCacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class ContactCacheController {
+
+    @Autowired
+    private ClientContactCache clientContactCache;
+
+    @Autowired
+    private FtpCsvToPostgresService ftpCsvToPostgresService;
+
+    @GetMapping("/contact-cache")
+    public ContactCacheStats getStats() {
+        CacheStats stats = clientContactCache.stats();
+        return new ContactCacheStats(clientContactCache.size(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+
+    @PostMapping("/contact-cache/warm-up")
+    public String warmUp() {
+        return ftpCsvToPostgresService.warmContactCache();
+    }
+
+    @DeleteMapping("/contact-cache")
+    public String invalidateAll() {
+        clientContactCache.invalidateAll();
+        return "Contact cache cleared";
+    }
+
+    @DeleteMapping("/contact-cache/{clntId}")
+    public String invalidate(@PathVariable String clntId) {
+        clientContactCache.invalidate(clntId);
+        return "Contact cache entry removed for " + clntId;
+    }
+}
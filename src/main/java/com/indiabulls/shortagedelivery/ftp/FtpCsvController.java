@@ -1,40 +1,67 @@
 package com.indiabulls.shortagedelivery.ftp;
 
+import com.indiabulls.shortagedelivery.contact.ShortageContact;
+import com.indiabulls.shortagedelivery.scheduler.JobDagEngine;
+import com.indiabulls.shortagedelivery.scheduler.JobRun;
+import com.indiabulls.shortagedelivery.scheduler.JobStep;
+import com.indiabulls.shortagedelivery.scheduler.ShortageDeliveryScheduler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.net.URI;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * The original on-demand triggers. The file loads and notifications run as jobs on the job engine,
+ * like {@code POST /jobs/{job}}: they return 202 with the run, whose progress is at
+ * {@code /jobs/runs/{id}}, and join a run already in progress of the same job or of one sharing
+ * its steps, such as the scheduled cycle.
+ */
 @RestController
 public class FtpCsvController {
 
     @Autowired
     private FtpCsvToPostgresService ftpCsvToPostgresService;
 
+    @Autowired
+    private JobDagEngine jobDagEngine;
+
+    @Autowired
+    private ShortageDeliveryScheduler shortageDeliveryScheduler;
+
     @GetMapping("/fetch")
-    public String loadShortFile() {
-        return ftpCsvToPostgresService.loadShrtFileAndCompare();
+    public ResponseEntity<JobRun> loadShortFile() {
+        return startJob("shrt");
     }
 
     @GetMapping("/equity")
-    public String loadEquityT1File() {
-        return ftpCsvToPostgresService.loadDeliveryDpoFile();
+    public ResponseEntity<JobRun> loadEquityT1File() {
+        return startJob("dpo");
     }
 
     @GetMapping("/shortage-contacts")
-    public List<Map<String, Object>> getShortageContacts() {
+    public List<ShortageContact> getShortageContacts() {
         return ftpCsvToPostgresService.findClientsWithShortageContacts();
     }
 
     @GetMapping("/notify-shortages")
-    public String notifyShortages() {
-        ftpCsvToPostgresService.notifyClientsWithShortages();
-        return "Shortage notifications sent successfully!";
+    public ResponseEntity<JobRun> notifyShortages() {
+        return startJob("notify");
     }
+
     @GetMapping("/auction")
-    public String loadAuctionFile() {
-        return ftpCsvToPostgresService.loadAuctionFileAndNotify();
+    public ResponseEntity<JobRun> loadAuctionFile() {
+        return startJob("auction");
+    }
+
+    private ResponseEntity<JobRun> startJob(String job) {
+        List<JobStep> steps = shortageDeliveryScheduler.jobSteps(job)
+                .orElseThrow(() -> new IllegalStateException("Unknown job " + job));
+        JobRun run = jobDagEngine.startOrJoin(job, steps);
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/runs/" + run.getId()))
+                .body(run);
     }
 }
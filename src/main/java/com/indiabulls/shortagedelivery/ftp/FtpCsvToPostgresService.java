@@ -1,365 +1,433 @@
 package com.indiabulls.shortagedelivery.ftp;
 
+import com.indiabulls.shortagedelivery.contact.ClientContact;
+import com.indiabulls.shortagedelivery.contact.ClientContactResolver;
+import com.indiabulls.shortagedelivery.contact.ShortageContact;
+import com.indiabulls.shortagedelivery.ingest.AuctionRow;
+import com.indiabulls.shortagedelivery.ingest.CsvTokenizer;
+import com.indiabulls.shortagedelivery.ingest.DeliveryDpoBulkLoader;
+import com.indiabulls.shortagedelivery.ingest.DeliveryDpoPipeline;
+import com.indiabulls.shortagedelivery.ingest.DeliveryDpoWriter;
+import com.indiabulls.shortagedelivery.ingest.DpoIngestionLedger;
+import com.indiabulls.shortagedelivery.ingest.PipelineReport;
+import com.indiabulls.shortagedelivery.ingest.ShortDeliveryMerger;
+import com.indiabulls.shortagedelivery.ingest.ShortDeliveryReconciler;
+import com.indiabulls.shortagedelivery.ingest.ShortageMismatch;
+import com.indiabulls.shortagedelivery.ingest.TotalQuantityAggregator;
 import com.indiabulls.shortagedelivery.notification.dto.PushNotificationRequest;
 import com.indiabulls.shortagedelivery.notification.dto.ShortageEmailTemplateData;
+import com.indiabulls.shortagedelivery.notification.dto.SmsNotificationRequest;
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationBatcher;
 import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRequest;
+import com.indiabulls.shortagedelivery.notification.outbox.NotificationOutbox;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboundNotification;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboxRelay;
 import com.indiabulls.shortagedelivery.notification.service.EmailNotificationService;
+import com.indiabulls.shortagedelivery.notification.state.NotificationKey;
+import com.indiabulls.shortagedelivery.notification.state.NotificationStateStore;
 import com.indiabulls.shortagedelivery.notification.service.PushNotificationService;
+import com.indiabulls.shortagedelivery.notification.service.SmsNotificationService;
+import com.indiabulls.shortagedelivery.scheduler.JobProgress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.apache.commons.net.ftp.FTP;
-import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
 
 @Service
 public class FtpCsvToPostgresService {
 
     private static final Logger log = LoggerFactory.getLogger(FtpCsvToPostgresService.class);
 
+    // Parsed rows are reported to a running job in chunks of this many
+    private static final int PROGRESS_ROWS = 10_000;
+
+    private static final String AUCTION_TEMPLATE = "auction_settlement_shares";
+
 
-    @Value("${ftp.server}") private String ftpServer;
-    @Value("${ftp.user}") private String ftpUser;
-    @Value("${ftp.pass}") private String ftpPass;
     @Value("${ftp.base-path}") private String ftpBasePath; // e.g. /indiabulls/ib-automation/backoffice-input
 
-    @Value("${spring.datasource.url}") private String jdbcUrl;
-    @Value("${spring.datasource.username}") private String jdbcUser;
-    @Value("${spring.datasource.password}") private String jdbcPass;
+    // Pooled connections (SearchServiceHikariCP)
+    private final DataSource dataSource;
+
+    // Logged-in FTP connections shared by the loaders
+    private final FtpSessionPool ftpSessionPool;
 
 
     private final EmailNotificationService emailNotificationService;
     private final PushNotificationService pushNotificationService;
-
-    public FtpCsvToPostgresService(EmailNotificationService emailNotificationService, PushNotificationService pushNotificationService) {
+    private final DeliveryDpoBulkLoader deliveryDpoBulkLoader;
+    private final ShortDeliveryReconciler shortDeliveryReconciler;
+    private final ClientContactResolver clientContactResolver;
+    private final SmsNotificationService smsNotificationService;
+    private final NotificationBatcher notificationBatcher;
+    private final DeliveryDpoPipeline deliveryDpoPipeline;
+    private final DpoIngestionLedger dpoIngestionLedger;
+    private final ShortDeliveryMerger shortDeliveryMerger;
+    private final TotalQuantityAggregator totalQuantityAggregator;
+    private final NotificationStateStore notificationStateStore;
+    private final NotificationOutbox notificationOutbox;
+    private final OutboxRelay outboxRelay;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shortage.fanout.channels:email,push}") private Set<NotificationChannel> shortageChannels;
+    @Value("${shortage.templates.sms.shortage:shortage_sms_template}") private String smsTemplate;
+    @Value("${shortage.templates.email.name}") private String emailTemplate;
+
+    public FtpCsvToPostgresService(DataSource dataSource, FtpSessionPool ftpSessionPool,
+                                   EmailNotificationService emailNotificationService, PushNotificationService pushNotificationService,
+                                   SmsNotificationService smsNotificationService,
+                                   DeliveryDpoBulkLoader deliveryDpoBulkLoader, ShortDeliveryReconciler shortDeliveryReconciler,
+                                   ClientContactResolver clientContactResolver,
+                                   NotificationBatcher notificationBatcher, DeliveryDpoPipeline deliveryDpoPipeline,
+                                   DpoIngestionLedger dpoIngestionLedger, ShortDeliveryMerger shortDeliveryMerger,
+                                   TotalQuantityAggregator totalQuantityAggregator, NotificationStateStore notificationStateStore,
+                                   NotificationOutbox notificationOutbox, OutboxRelay outboxRelay,
+                                   MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.ftpSessionPool = ftpSessionPool;
         this.emailNotificationService = emailNotificationService;
         this.pushNotificationService = pushNotificationService;
+        this.smsNotificationService = smsNotificationService;
+        this.notificationBatcher = notificationBatcher;
+        this.deliveryDpoPipeline = deliveryDpoPipeline;
+        this.dpoIngestionLedger = dpoIngestionLedger;
+        this.shortDeliveryMerger = shortDeliveryMerger;
+        this.totalQuantityAggregator = totalQuantityAggregator;
+        this.notificationStateStore = notificationStateStore;
+        this.notificationOutbox = notificationOutbox;
+        this.outboxRelay = outboxRelay;
+        this.meterRegistry = meterRegistry;
+        this.deliveryDpoBulkLoader = deliveryDpoBulkLoader;
+        this.shortDeliveryReconciler = shortDeliveryReconciler;
+        this.clientContactResolver = clientContactResolver;
     }
 
 //Part 1 : Detection of Shortage in delivery of  Stocks notification
 
     public String loadDeliveryDpoFile() {
-        FTPClient ftpClient = new FTPClient();
-
-        try {
+        // Pooled, already logged-in FTP connection
+        try (FtpSessionPool.Session ftp = ftpSessionPool.borrow()) {
             // Build today's path
             LocalDate today = LocalDate.now();            String dateFolder = today.format(DateTimeFormatter.ofPattern("dd-MMMM-yyyy"));
             String todayBasePath = ftpBasePath + "/" + dateFolder + "/stocks";
 
-            // Connect FTP
-            ftpClient.connect(ftpServer);
-            ftpClient.login(ftpUser, ftpPass);
-            ftpClient.enterLocalPassiveMode();
-            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
-
             // Locate DeliveryDPO file
-            String dpoFilePath = null;
-            for (FTPFile file : ftpClient.listFiles(todayBasePath)) {
-                String name = file.getName();
-                if (name.matches("DeliveryDpo_NCL_CM_EquityT1_CM_08756_.*\\.csv\\.gz")) {
-                    dpoFilePath = todayBasePath + "/" + name;
-                    log.info("Found DeliveryDPO file: " + dpoFilePath);
-                    break;
-                }
-            }
-            if (dpoFilePath == null) {
+            Optional<FTPFile> found = ftp.findFile(todayBasePath, "DeliveryDpo_NCL_CM_EquityT1_CM_08756_.*\\.csv\\.gz");
+            if (!found.isPresent()) {
                 return "DeliveryDPO file not found in " + todayBasePath;
             }
-
-            // Download into memory
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            boolean ok = ftpClient.retrieveFile(dpoFilePath, baos);
-            if (!ok) {
-                return "Failed to download: " + dpoFilePath;
+            FTPFile dpoFile = found.get();
+            String dpoFilePath = todayBasePath + "/" + dpoFile.getName();
+            log.info("Found DeliveryDPO file: " + dpoFilePath);
+
+            String result;
+            try (Connection conn = dataSource.getConnection()) {
+                // Same name, size and timestamp as the last load: only the totals can have changed
+                if (dpoIngestionLedger.isUnchanged(conn, dpoFile)) {
+                    log.info("DeliveryDPO file " + dpoFile.getName() + " is unchanged since it was loaded, skipping");
+                    refreshLedgerTotals(conn, dpoFile.getName());
+                    result = "DeliveryDPO file " + dpoFile.getName() + " already loaded";
+                } else {
+                    result = loadDeliveryDpoFile(ftp, dpoFile, dpoFilePath, conn);
+                }
             }
 
-            // Prepare CSV reader (gzip → utf-8 text)
-            InputStream rawIn = new ByteArrayInputStream(baos.toByteArray());
-            InputStream csvIn = new GZIPInputStream(rawIn);
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(csvIn, StandardCharsets.UTF_8));
-                 Connection conn = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPass)) {
-
-                conn.setAutoCommit(false);
-                String insertSql = "INSERT INTO focus.short_delivery " +
-                        "(settlement_no, clnt_id, qty_received_t1, security_symbol, isin) " +
-                        "VALUES (?, ?, ?, ?, ?)";
-
-                try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-                    String headerLine = reader.readLine();
-                    if (headerLine == null) {
-                        return "Empty DeliveryDPO file!";
-                    }
-
-                    String[] headers = headerLine.split(",", -1);
-                    Map<String, Integer> headerMap = new HashMap<>();
-                    for (int i = 0; i < headers.length; i++) {
-                        headerMap.put(headers[i].trim(), i);
-                    }
-
-                    // Ensure required headers exist
-                    if (!headerMap.containsKey("SctiesSttlmTxId") ||
-                            !headerMap.containsKey("ClntId") ||
-                            !headerMap.containsKey("QtyORShrtQty") ||
-                            !headerMap.containsKey("TckrSymb") ||
-                            !headerMap.containsKey("ISIN")) {
-                        return "Missing required headers in DeliveryDPO file!";
-                    }
-
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        String[] cols = line.split(",", -1);
-
-                        String settlementNo = cols[headerMap.get("SctiesSttlmTxId")].trim();
-                        String clntId = cols[headerMap.get("ClntId")].trim();
-                        int qty = Integer.parseInt(cols[headerMap.get("QtyORShrtQty")].trim());
-                        String tckrSymb = cols[headerMap.get("TckrSymb")].trim();
-                        String isin = cols[headerMap.get("ISIN")].trim();
-
-                        // Convert settlementNo to long for BIGINT
+            return result;
 
+        } catch (Exception e) {
+            log.error("Failed to load DeliveryDPO file", e);
+            return "Error: " + e.getMessage();
+        }
+    }
 
+    /**
+     * Stages the file, upserts it into short_delivery and records it in the ledger, all in one
+     * transaction. A file whose checksum matches the ledger is not merged again.
+     */
+    private String loadDeliveryDpoFile(FtpSessionPool.Session ftp, FTPFile dpoFile, String dpoFilePath, Connection conn)
+            throws IOException, SQLException {
+        conn.setAutoCommit(false);
+        String sharedStage = null;
+        try {
+            String stageTable;
+            DeliveryDpoWriter stageWriter;
+            if (deliveryDpoBulkLoader.getWriters() > 1) {
+                // Parallel writers commit on connections of their own into a table for this load;
+                // short_delivery itself still only changes in this transaction
+                try (Connection ddl = dataSource.getConnection()) {
+                    sharedStage = shortDeliveryMerger.createSharedStage(ddl);
+                }
+                stageTable = sharedStage;
+                stageWriter = deliveryDpoBulkLoader.openParallel(stageTable);
+            } else {
+                shortDeliveryMerger.createStage(conn);
+                stageTable = ShortDeliveryMerger.STAGE_TABLE;
+                stageWriter = deliveryDpoBulkLoader.open(conn, stageTable);
+            }
 
-                        ps.setString(1, settlementNo);
-                        ps.setString(2, clntId);       // TEXT
-                        ps.setInt(3, qty);             // INTEGER
-                        ps.setString(4, tckrSymb);     // TEXT
-                        ps.setString(5, isin);         // TEXT
+            // Download, gunzip, parse and COPY on overlapping stages, checksumming the compressed bytes
+            JobProgress.stage("loading");
+            MessageDigest digest = sha256();
+            PipelineReport report;
+            try (FtpDownloadStream download = ftp.downloadRaw(dpoFilePath);
+                 DeliveryDpoWriter writer = stageWriter) {
+                report = deliveryDpoPipeline.load(new DigestInputStream(download.inputStream(), digest), writer);
+            }
+            if (report.isEmptyFile()) {
+                conn.rollback();
+                return "Empty DeliveryDPO file!";
+            }
+            String checksum = toHex(digest.digest());
+            countRows("dpo", "parsed", report.getRows());
+
+            if (checksum.equals(dpoIngestionLedger.checksum(conn, dpoFile.getName()))) {
+                log.info("DeliveryDPO file " + dpoFile.getName() + " has the same content as its last load, skipping merge");
+                JobProgress.stage("updating totals");
+                int totals = totalQuantityAggregator.refreshStagedSettlements(conn, stageTable);
+                log.info("Updated total_quantity for " + totals + " rows in short_delivery");
+                dpoIngestionLedger.record(conn, dpoFile, checksum, report.getRows(), stageTable);
+                conn.commit();
+                countRows("dpo", "skipped", report.getRows());
+                return "DeliveryDPO file " + dpoFile.getName() + " already loaded";
+            }
 
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
+            JobProgress.stage("merging");
+            int merged = shortDeliveryMerger.merge(conn, stageTable);
+            log.info("Staged " + report.getRows() + " DeliveryDPO rows, " + merged + " rows of short_delivery inserted or changed");
 
-                    // Update total_quantity from trxn_table_class
-                    updateShortDeliveryWithTotalQty(conn);
+            // Update total_quantity from trxn_table_class, for this file's settlements only
+            JobProgress.stage("updating totals");
+            int totals = totalQuantityAggregator.refreshStagedSettlements(conn, stageTable);
+            log.info("Updated total_quantity for " + totals + " rows in short_delivery");
 
-                    conn.commit();
+            dpoIngestionLedger.record(conn, dpoFile, checksum, report.getRows(), stageTable);
+            conn.commit();
+            // Rows already in short_delivery with the same values are left alone by the merge
+            countRows("dpo", "inserted", merged);
+            countRows("dpo", "skipped", Math.max(0, report.getRows() - merged));
+            return "Updated focus.short_delivery with DeliveryDPO data";
+        } catch (IOException | SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            if (sharedStage != null) {
+                try {
+                    shortDeliveryMerger.dropSharedStage(conn, sharedStage);
+                } catch (SQLException e) {
+                    log.warn("Failed to drop staging table " + sharedStage, e);
                 }
             }
+        }
+    }
 
-            // Disconnect FTP
-            ftpClient.logout();
-            ftpClient.disconnect();
+    /**
+     * Updates total_quantity for the settlements of a file that is not loaded again; trades for
+     * them can still have arrived since.
+     */
+    private void refreshLedgerTotals(Connection conn, String fileName) throws SQLException {
+        JobProgress.stage("updating totals");
+        conn.setAutoCommit(false);
+        try {
+            int totals = totalQuantityAggregator.refreshLedgerSettlements(conn, fileName);
+            conn.commit();
+            log.info("Updated total_quantity for " + totals + " rows in short_delivery");
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
 
-            return "Updated focus.short_delivery with DeliveryDPO data";
+    /**
+     * Counts rows of a file in {@code shortage.file.rows}: parsed from the file, then inserted or
+     * queued, or skipped.
+     */
+    private void countRows(String file, String outcome, long rows) {
+        Counter.builder("shortage.file.rows")
+                .tag("file", file)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(rows);
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            try {
-                if (ftpClient.isConnected()) {
-                    ftpClient.logout();
-                    ftpClient.disconnect();
-                }
-            } catch (Exception ignored) {}
-            return "Error: " + e.getMessage();
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
-    private void updateShortDeliveryWithTotalQty(Connection conn) throws SQLException {
-        String updateSql =
-                "UPDATE focus.short_delivery sd " +
-                        "SET total_quantity = sub.total_trn_qty " +
-                        "FROM (" +
-                        "    SELECT settlement_no, UPPER(isin) AS isin, TRIM(LEADING 'C' FROM party_cd) AS clnt_id, " +
-                        "           SUM(trn_qty) AS total_trn_qty " +
-                        "    FROM focus.trxn_table_class " +
-                        "    GROUP BY settlement_no, UPPER(isin), TRIM(LEADING 'C' FROM party_cd)" +
-                        ") sub " +
-                        "WHERE sd.settlement_no = sub.settlement_no " +
-                        "AND UPPER(sd.isin) = sub.isin " +
-                        "AND sd.clnt_id = sub.clnt_id";
-
-        try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
-            int updated = ps.executeUpdate();
-            log.info("Updated total_quantity for " + updated + " rows in short_delivery");
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
         }
+        return sb.toString();
     }
 
     public String loadShrtFileAndCompare() {
-        FTPClient ftpClient = new FTPClient();
-
-        try {
+        // Pooled, already logged-in FTP connection
+        try (FtpSessionPool.Session ftp = ftpSessionPool.borrow()) {
             // Build yesterday’s folder path
             LocalDate today = LocalDate.now();
             String dateFolder = today.format(DateTimeFormatter.ofPattern("dd-MMMM-yyyy"));
             String todayBasePath = ftpBasePath + "/" + dateFolder + "/stocks";
 
-            // Connect FTP
-            ftpClient.connect(ftpServer);
-            ftpClient.login(ftpUser, ftpPass);
-            ftpClient.enterLocalPassiveMode();
-            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
-
             // Locate SHRT file
-            String shrtFilePath = null;
-            for (FTPFile file : ftpClient.listFiles(todayBasePath)) {
-                String name = file.getName();
-                if (name.matches("NCL_C_.*\\.csv\\.gz")) {
-                    shrtFilePath = todayBasePath + "/" + name;
-                    log.info("Found SHRT file: " + shrtFilePath);
-                    break;
-                }
-            }
-            if (shrtFilePath == null) {
+            Optional<FTPFile> found = ftp.findFile(todayBasePath, "NCL_C_.*\\.csv\\.gz");
+            if (!found.isPresent()) {
                 return "SHRT file not found in " + todayBasePath;
             }
+            String shrtFilePath = todayBasePath + "/" + found.get().getName();
+            log.info("Found SHRT file: " + shrtFilePath);
 
-            // Download file into memory
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            boolean ok = ftpClient.retrieveFile(shrtFilePath, baos);
-            if (!ok) {
-                return "Failed to download: " + shrtFilePath;
-            }
-
-            // Prepare reader (gzip → utf-8 text)
-            InputStream rawIn = new ByteArrayInputStream(baos.toByteArray());
-            InputStream csvIn = new GZIPInputStream(rawIn);
+            // Stream the file (gzip → csv tokens) while it downloads
+            try (FtpDownloadStream download = ftp.download(shrtFilePath);
+                 CsvTokenizer csv = new CsvTokenizer(download.inputStream());
+                 Connection conn = dataSource.getConnection()) {
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(csvIn, StandardCharsets.UTF_8));
-                 Connection conn = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPass)) {
-
-                String headerLine = reader.readLine();
-                if (headerLine == null) {
+                if (!csv.next()) {
                     return "Empty SHRT file!";
                 }
 
-                String[] headers = headerLine.split(",", -1);
-                Map<String, Integer> headerMap = new HashMap<>();
-                for (int i = 0; i < headers.length; i++) {
-                    headerMap.put(headers[i].trim(), i);
+                int symbolCol = csv.indexOf("Security Symbol");
+                if (symbolCol < 0) {
+                    return "Missing required header 'Symbol' in SHRT file!";
                 }
 
-                if (!headerMap.containsKey("Security Symbol")) {
-                    return "Missing required header 'Symbol' in SHRT file!";
+                // Collect the distinct symbols once (no client id, so we only match on symbol)
+                Set<String> symbols = new LinkedHashSet<>();
+                long parsed = 0;
+                JobProgress.stage("parsing");
+                while (csv.next()) {
+                    symbols.add(csv.getString(symbolCol));
+                    if (++parsed % PROGRESS_ROWS == 0) {
+                        JobProgress.rows(PROGRESS_ROWS);
+                    }
                 }
+                JobProgress.rows(parsed % PROGRESS_ROWS);
+                countRows("shrt", "parsed", parsed);
+                JobProgress.stage("reconciling");
 
-                // Query (no client id, so we only match on symbol)
-                String checkSql = "SELECT clnt_id, qty_received_t1, total_quantity " +
-                        "FROM focus.short_delivery " +
-                        "WHERE security_symbol = ?";
-
-                // Update short_quantity where mismatch found
-                String updateSql = "UPDATE focus.short_delivery " +
-                        "SET short_quantity = ? " +
-                        "WHERE clnt_id = ? AND security_symbol = ?";
-
-                List<String> mismatches = new ArrayList<>();
-
-                try (PreparedStatement ps = conn.prepareStatement(checkSql);
-                     PreparedStatement updatePs = conn.prepareStatement(updateSql)) {
-
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        String[] cols = line.split(",", -1);
-
-                        String symbol = cols[headerMap.get("Security Symbol")].trim();
-                        ps.setString(1, symbol);
-
-                        try (ResultSet rs = ps.executeQuery()) {
-                            while (rs.next()) {
-                                String clntId = rs.getString("clnt_id");
-                                int qtyReceived = rs.getInt("qty_received_t1");
-                                int totalQty = rs.getInt("total_quantity");
-
-                                if (qtyReceived != totalQty) {
-                                    int diff = totalQty - qtyReceived;
-
-                                    // Update short_quantity
-                                    updatePs.setInt(1, diff);
-                                    updatePs.setString(2, clntId);
-                                    updatePs.setString(3, symbol);
-                                    updatePs.executeUpdate();
-
-                                    mismatches.add("Client=" + clntId +
-                                            ", Symbol=" + symbol +
-                                            ", total_quantity=" + totalQty +
-                                            ", qty_received_t1=" + qtyReceived +
-                                            ", short_quantity set to=" + diff);
-                                }
-                            }
-                        }
+                // Update short_quantity for every mismatch in a single statement, and queue the
+                // notifications for it in the same transaction
+                conn.setAutoCommit(false);
+                List<ShortageMismatch> mismatches;
+                Map<NotificationKey, Integer> queued = Collections.emptyMap();
+                try {
+                    mismatches = shortDeliveryReconciler.reconcile(conn, symbols);
+                    if (!mismatches.isEmpty()) {
+                        queued = enqueueShortageNotifications(conn, findClientsWithShortageContacts(conn));
                     }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
 
                 if (mismatches.isEmpty()) {
                     return "No mismatches found between SHRT and short_delivery";
                 } else {
-                    mismatches.forEach(System.out::println);
-                    return "Updated short_quantity for " + mismatches.size() + " rows.";
+                    notificationStateStore.remember(queued);
+                    outboxRelay.wakeUp();
+                    meterRegistry.counter("shortage.shrt.mismatches").increment(mismatches.size());
+                    mismatches.forEach(m -> log.info(m.describe()));
+                    return "Updated short_quantity for " + mismatches.size() + " rows and queued "
+                            + queued.size() + " notifications.";
                 }
             }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Failed to compare SHRT file", e);
             return "Error: " + e.getMessage();
-        } finally {
-            try {
-                if (ftpClient.isConnected()) {
-                    ftpClient.logout();
-                    ftpClient.disconnect();
-                }
-            } catch (Exception ignored) {}
+        }
+    }
+
+    /**
+     * Bulk-loads cust_mst contacts for the clients with a shortage in short_delivery so the lookups
+     * of this run are served from the cache. Only an optimisation: on failure the lookups go to cust_mst, so
+     * the step still succeeds and the notifications that depend on it run.
+     */
+    public String warmContactCache() {
+        try (Connection conn = dataSource.getConnection()) {
+            int loaded = clientContactResolver.warmUp(conn);
+            log.info("Warmed contact cache with " + loaded + " contacts");
+            return "Warmed contact cache with " + loaded + " contacts";
+        } catch (SQLException e) {
+            log.warn("Failed to warm contact cache, contacts will be looked up as needed", e);
+            return "Contact cache not warmed: " + e.getMessage();
         }
     }
 
     /**
      * Finds clients with shortages and retrieves their contact info from cust_mst.
      */
-    public List<Map<String, Object>> findClientsWithShortageContacts() {
-        List<Map<String, Object>> results = new ArrayList<>();
+    public List<ShortageContact> findClientsWithShortageContacts() {
+        try (Connection conn = dataSource.getConnection()) {
+            return findClientsWithShortageContacts(conn);
+        } catch (SQLException e) {
+            log.error("Failed to look up clients with shortages", e);
+            return new ArrayList<>();
+        }
+    }
+
+    private List<ShortageContact> findClientsWithShortageContacts(Connection conn) throws SQLException {
+        List<ShortageContact> results = new ArrayList<>();
 
-        String shortageSql = "SELECT clnt_id, security_symbol, short_quantity " +
+        String shortageSql = "SELECT clnt_id, security_symbol, settlement_no, short_quantity " +
                 "FROM focus.short_delivery " +
                 "WHERE short_quantity IS NOT NULL AND short_quantity > 0";
 
-        String custSql = "SELECT email_no, mobile_no " +
-                "FROM focus.cust_mst " +
-                "WHERE party_cd = ?";
-
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPass);
-             PreparedStatement shortagePs = conn.prepareStatement(shortageSql);
-             PreparedStatement custPs = conn.prepareStatement(custSql)) {
+        try (PreparedStatement shortagePs = conn.prepareStatement(shortageSql)) {
 
+            List<ShortageContact> shortages = new ArrayList<>();
+            Set<String> clntIds = new HashSet<>();
             try (ResultSet rs = shortagePs.executeQuery()) {
                 while (rs.next()) {
-                    String clntId = rs.getString("clnt_id");
-                    String symbol = rs.getString("security_symbol");
-                    int shortQty = rs.getInt("short_quantity");
-
-                    // lookup in cust_mst, prefix "C"
-                    custPs.setString(1, "C" + clntId);
-                    try (ResultSet custRs = custPs.executeQuery()) {
-                        if (custRs.next()) {
-                            String email = custRs.getString("email_no");
-                            String mobile = custRs.getString("mobile_no");
-
-                            Map<String, Object> row = new HashMap<>();
-                            row.put("clnt_id", clntId);
-                            row.put("security_symbol", symbol);
-                            row.put("short_quantity", shortQty);
-                            row.put("email_no", email);
-                            row.put("mobile_no", mobile);
-
-                            results.add(row);
-                            log.info("Client=" + clntId + ", Symbol=" + symbol +
-                                    ", ShortQty=" + shortQty +
-                                    ", Email=" + email + ", Mobile=" + mobile);
-                        }
-                    }
+                    ShortageContact shortage = new ShortageContact();
+                    shortage.setClntId(rs.getString("clnt_id"));
+                    shortage.setSecuritySymbol(rs.getString("security_symbol"));
+                    shortage.setSettlementNo(rs.getString("settlement_no"));
+                    shortage.setShortQuantity(rs.getInt("short_quantity"));
+                    shortages.add(shortage);
+                    clntIds.add(shortage.getClntId());
                 }
             }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+            // lookup in cust_mst once per distinct client
+            Map<String, ClientContact> contacts = clientContactResolver.resolve(conn, clntIds);
+
+            for (ShortageContact shortage : shortages) {
+                ClientContact contact = contacts.get(shortage.getClntId());
+                if (contact != null) {
+                    shortage.setEmail(contact.getEmail());
+                    shortage.setMobile(contact.getMobile());
+
+                    results.add(shortage);
+                    log.info("Client=" + shortage.getClntId() + ", Symbol=" + shortage.getSecuritySymbol() +
+                            ", ShortQty=" + shortage.getShortQuantity() +
+                            ", Email=" + contact.getEmail() + ", Mobile=" + contact.getMobile());
+                }
+            }
         }
 
         return results;
@@ -369,186 +437,310 @@ public class FtpCsvToPostgresService {
 
 
 
-        // --- existing methods (loadShrtFileAndCompare, findClientsWithShortageContacts, etc.) ---
-
-        public void notifyClientsWithShortages() {
-            List<Map<String, Object>> shortages = findClientsWithShortageContacts();
-
-            for (Map<String, Object> row : shortages) {
-                String clntId = (String) row.get("clnt_id");
-                String symbol = (String) row.get("security_symbol");
-                Integer shortQty = (Integer) row.get("short_quantity");
-                String email = (String) row.get("email_no");
-                String mobile = (String) row.get("mobile_no");
+    /**
+     * Queues the shortage email and push (and SMS when enabled) for every client with a new or
+     * changed shortage; shortages already notified with the same quantity are skipped. The messages
+     * are committed to the notification outbox in one transaction and published by the
+     * {@link OutboxRelay}.
+     */
+    public String notifyClientsWithShortages() {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            Map<NotificationKey, Integer> queued;
+            try {
+                queued = enqueueShortageNotifications(conn, findClientsWithShortageContacts(conn));
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            notificationStateStore.remember(queued);
+            outboxRelay.wakeUp();
+            return "Queued " + queued.size() + " shortage notifications";
+        } catch (SQLException e) {
+            log.error("Failed to queue shortage notifications", e);
+            return "Error: " + e.getMessage();
+        }
+    }
 
-                // --- Build Email Notification ---
+    /**
+     * Writes the shortage notifications that are new or changed to the outbox, and their state, on
+     * the caller's transaction. Requests are coalesced into multi-receiver messages first.
+     *
+     * @return the notifications queued, to {@link NotificationStateStore#remember} once committed
+     */
+    private Map<NotificationKey, Integer> enqueueShortageNotifications(Connection conn, List<ShortageContact> shortages)
+            throws SQLException {
+        List<NotificationMessageRequest<ShortageEmailTemplateData>> emailReqs = new ArrayList<>();
+        List<NotificationMessageRequest<Map<String, Object>>> pushReqs = new ArrayList<>();
+        List<NotificationMessageRequest<Map<String, Object>>> smsReqs = new ArrayList<>();
+        List<NotificationKey> emailKeys = new ArrayList<>();
+        List<NotificationKey> pushKeys = new ArrayList<>();
+        List<NotificationKey> smsKeys = new ArrayList<>();
+        Map<NotificationKey, Integer> queued = new HashMap<>();
+        for (ShortageContact row : shortages) {
+            String clntId = row.getClntId();
+            String symbol = row.getSecuritySymbol();
+            int shortQty = row.getShortQuantity();
+
+            // --- Build Email Notification ---
+            NotificationKey emailKey = notificationKey(row, NotificationChannel.EMAIL, emailTemplate);
+            if (notificationStateStore.needsNotification(emailKey, shortQty)) {
                 ShortageEmailTemplateData emailData = new ShortageEmailTemplateData();
                 emailData.setSYMBOL(symbol);
                 emailData.setQTY(shortQty);
 
-                NotificationMessageRequest<ShortageEmailTemplateData> emailReq =
-                        NotificationMessageRequest.<ShortageEmailTemplateData>builder()
-                                .receivers(Collections.singletonList(email))
-                                .templateDataJson(emailData)
-                                .build();
+                emailReqs.add(NotificationMessageRequest.<ShortageEmailTemplateData>builder()
+                        .receivers(Collections.singletonList(row.getEmail()))
+                        .templateDataJson(emailData)
+                        .build());
+                emailKeys.add(emailKey);
+                queued.put(emailKey, shortQty);
+            }
+
+            // --- Build Push Notification ---
+            Map<String, Object> templateData = new HashMap<>();
+            templateData.put("SYMBOL", symbol);
+            templateData.put("QTY", shortQty);
+            NotificationKey pushKey = notificationKey(row, NotificationChannel.PUSH, "shortage_push_template");
+            if (notificationStateStore.needsNotification(pushKey, shortQty)) {
+                pushReqs.add(NotificationMessageRequest.<Map<String, Object>>builder()
+                        .receivers(Collections.singletonList(clntId))
+                        .templateName("shortage_push_template")
+                        .templateDataJson(templateData)
+                        .build());
+                pushKeys.add(pushKey);
+                queued.put(pushKey, shortQty);
+            }
 
-                emailNotificationService.sendEmailNotification(emailReq);
+            // --- Build SMS Notification ---
+            if (shortageChannels.contains(NotificationChannel.SMS) && row.getMobile() != null && !row.getMobile().isEmpty()) {
+                NotificationKey smsKey = notificationKey(row, NotificationChannel.SMS, smsTemplate);
+                if (notificationStateStore.needsNotification(smsKey, shortQty)) {
+                    smsReqs.add(NotificationMessageRequest.<Map<String, Object>>builder()
+                            .receivers(Collections.singletonList(row.getMobile()))
+                            .templateName(smsTemplate)
+                            .templateDataJson(templateData)
+                            .build());
+                    smsKeys.add(smsKey);
+                    queued.put(smsKey, shortQty);
+                }
+            }
+        }
 
-//                 --- Build Push Notification ---
-                PushNotificationRequest pushReq = new PushNotificationRequest();
-                pushReq.setReceivers(Collections.singletonList(clntId));
-                pushReq.setTemplateName("shortage_push_template");
-                Map<String, Object> templateData = new HashMap<>();
-                templateData.put("SYMBOL", symbol);
-                templateData.put("QTY", shortQty);
-                pushReq.setTemplateDataJson(templateData);
+        List<OutboundNotification> messages = new ArrayList<>();
+        Map<NotificationKey, Integer> messageOf = new HashMap<>();
+        for (NotificationBatcher.Batch<ShortageEmailTemplateData> emailBatch : notificationBatcher.batch(emailReqs)) {
+            linkMessage(messageOf, emailKeys, emailBatch, messages.size());
+            messages.add(emailNotificationService.composeEmailNotification(emailBatch.getRequest()));
+        }
+        for (NotificationBatcher.Batch<Map<String, Object>> pushBatch : notificationBatcher.batch(pushReqs)) {
+            linkMessage(messageOf, pushKeys, pushBatch, messages.size());
+            messages.add(pushNotificationService.composePush(toPushRequest(pushBatch.getRequest())));
+        }
+        for (NotificationBatcher.Batch<Map<String, Object>> smsBatch : notificationBatcher.batch(smsReqs)) {
+            linkMessage(messageOf, smsKeys, smsBatch, messages.size());
+            NotificationMessageRequest<Map<String, Object>> batch = smsBatch.getRequest();
+            SmsNotificationRequest smsReq = new SmsNotificationRequest();
+            smsReq.setReceivers(batch.getReceivers());
+            smsReq.setTemplateName(batch.getTemplateName());
+            smsReq.setTemplateDataJson(batch.getTemplateDataJson());
+            smsReq.setReceiverTemplateDataJson(batch.getReceiverTemplateData());
+            messages.add(smsNotificationService.composeSms(smsReq));
+        }
 
+        enqueueWithState(conn, messages, messageOf, queued);
+        log.info("Queued " + queued.size() + " new or changed shortage notifications ("
+                + shortages.size() + " shortages) as " + messages.size() + " outbox messages");
+        return queued;
+    }
 
-                pushNotificationService.sendPush(pushReq);
+    /** Records that the notifications of {@code keys} merged into {@code batch} go out as message {@code message}. */
+    private static void linkMessage(Map<NotificationKey, Integer> messageOf, List<NotificationKey> keys,
+                                    NotificationBatcher.Batch<?> batch, int message) {
+        for (int source : batch.getSources()) {
+            messageOf.put(keys.get(source), message);
+        }
+    }
 
-                log.info("Notifications sent for Client=" + clntId + ", Symbol=" + symbol);
-                        }
-            }
+    /**
+     * Writes the messages to the outbox and the notifications they carry to the state store, with
+     * the id of the outbox row of each; part of the caller's transaction.
+     */
+    private void enqueueWithState(Connection conn, List<OutboundNotification> messages,
+                                  Map<NotificationKey, Integer> messageOf, Map<NotificationKey, Integer> queued)
+            throws SQLException {
+        List<Long> outboxIds = notificationOutbox.enqueue(conn, messages);
+        Map<NotificationKey, Long> outboxIdOf = new HashMap<>();
+        messageOf.forEach((key, message) -> outboxIdOf.put(key, outboxIds.get(message)));
+        notificationStateStore.persist(conn, queued, outboxIdOf);
+    }
+
+    private NotificationKey notificationKey(ShortageContact row, NotificationChannel channel, String template) {
+        return new NotificationKey(row.getClntId(), Objects.toString(row.getSecuritySymbol(), ""),
+                Objects.toString(row.getSettlementNo(), ""), channel, template);
+    }
+
+    private static PushNotificationRequest toPushRequest(NotificationMessageRequest<Map<String, Object>> batch) {
+        PushNotificationRequest pushReq = new PushNotificationRequest();
+        pushReq.setReceivers(batch.getReceivers());
+        pushReq.setTemplateName(batch.getTemplateName());
+        pushReq.setTemplateDataJson(batch.getTemplateDataJson());
+        pushReq.setReceiverTemplateDataJson(batch.getReceiverTemplateData());
+        return pushReq;
+    }
 
             //Part 2 : Sending Auction Settlement   notification
 
     public String loadAuctionFileAndNotify() {
-        FTPClient ftpClient = new FTPClient();
-
-        try {
+        // Pooled, already logged-in FTP connection
+        try (FtpSessionPool.Session ftp = ftpSessionPool.borrow()) {
             // Build yesterday’s folder path
             LocalDate today = LocalDate.now();
             String dateFolder = today.format(DateTimeFormatter.ofPattern("dd-MMMM-yyyy"));
             String todayBasePath = ftpBasePath + "/" + dateFolder + "/stocks";
 
-            // Connect FTP
-            ftpClient.connect(ftpServer);
-            ftpClient.login(ftpUser, ftpPass);
-            ftpClient.enterLocalPassiveMode();
-            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
-
             // Locate Auction file
-            String auctionFilePath = null;
-            for (FTPFile file : ftpClient.listFiles(todayBasePath)) {
-                String name = file.getName();
-                if (name.matches("DeliveryDpo_NCL_CM_Auction_.*\\.csv\\.gz")) {
-                    auctionFilePath = todayBasePath + "/" + name;
-                    log.info("Found Auction file: " + auctionFilePath);
-                    break;
-                }
-            }
-            if (auctionFilePath == null) {
+            Optional<FTPFile> found = ftp.findFile(todayBasePath, "DeliveryDpo_NCL_CM_Auction_.*\\.csv\\.gz");
+            if (!found.isPresent()) {
                 return "Auction file not found in " + todayBasePath;
             }
+            String auctionFilePath = todayBasePath + "/" + found.get().getName();
+            log.info("Found Auction file: " + auctionFilePath);
 
-            // Download file into memory
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            boolean ok = ftpClient.retrieveFile(auctionFilePath, baos);
-            if (!ok) {
-                return "Failed to download: " + auctionFilePath;
-            }
-
-            // Prepare CSV reader (gzip → utf-8 text)
-            InputStream rawIn = new ByteArrayInputStream(baos.toByteArray());
-            InputStream csvIn = new GZIPInputStream(rawIn);
+            // Stream the file (gzip → csv tokens) while it downloads
+            try (FtpDownloadStream download = ftp.download(auctionFilePath);
+                 CsvTokenizer csv = new CsvTokenizer(download.inputStream());
+                 Connection conn = dataSource.getConnection()) {
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(csvIn, StandardCharsets.UTF_8));
-                 Connection conn = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPass)) {
-
-                String headerLine = reader.readLine();
-                if (headerLine == null) {
+                if (!csv.next()) {
                     return "Empty Auction file!";
                 }
 
-                String[] headers = headerLine.split(",", -1);
-                Map<String, Integer> headerMap = new HashMap<>();
-                for (int i = 0; i < headers.length; i++) {
-                    headerMap.put(headers[i].trim(), i);
-                }
+                int clntIdCol = csv.indexOf("ClntId");
+                int qtyCol = csv.indexOf("QtyORShrtQty");
+                int symbolCol = csv.indexOf("TckrSymb");
+                int settlementCol = csv.indexOf("SctiesSttlmTxId");
 
                 // Ensure required headers exist
-                if (!headerMap.containsKey("ClntId") ||
-                        !headerMap.containsKey("QtyORShrtQty") ||
-                        !headerMap.containsKey("TckrSymb")) {
+                if (clntIdCol < 0 || qtyCol < 0 || symbolCol < 0) {
                     return "Missing required headers in Auction file!";
                 }
 
-                String custSql = "SELECT email_no, mobile_no FROM focus.cust_mst WHERE party_cd = ?";
-                try (PreparedStatement custPs = conn.prepareStatement(custSql)) {
-
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        String[] cols = line.split(",", -1);
-
-                        String clntId = cols[headerMap.get("ClntId")].trim();
-                        String qtyStr = cols[headerMap.get("QtyORShrtQty")].trim();
-                        String symbol = cols[headerMap.get("TckrSymb")].trim();
-
-                        if (clntId.isEmpty() || qtyStr.isEmpty() || symbol.isEmpty()) {
-                            continue;
-                        }
-
-                        int qty = Integer.parseInt(qtyStr);
-
-                        // lookup in cust_mst, prefix "C"
-                        custPs.setString(1, "C" + clntId);
-                        try (ResultSet custRs = custPs.executeQuery()) {
-                            if (custRs.next()) {
-                                String email = custRs.getString("email_no");
-                                String mobile = custRs.getString("mobile_no");
-
-                                // --- Build Email Notification ---
-                                ShortageEmailTemplateData emailData = new ShortageEmailTemplateData();
-                                emailData.setSYMBOL(symbol);
-                                emailData.setQTY(qty);
-
-                                NotificationMessageRequest<ShortageEmailTemplateData> emailReq =
-                                        NotificationMessageRequest.<ShortageEmailTemplateData>builder()
-                                                .receivers(Collections.singletonList(email))
-                                                .templateName("auction_settlement_shares")
-                                                .templateDataJson(emailData)
-                                                .build();
-
-                                emailNotificationService.sendEmailNotification(emailReq);
-
-                                // --- Build Push Notification ---
-                                PushNotificationRequest pushReq = new PushNotificationRequest();
-                                pushReq.setReceivers(Collections.singletonList(clntId));
-                                Map<String, Object> templateData = new HashMap<>();
-                                templateData.put("SYMBOL", symbol);
-                                templateData.put("QTY", qty);
-                                pushReq.setTemplateName("auction_settlement_shares");
-                                pushReq.setTemplateDataJson(templateData);
-
+                List<AuctionRow> auctions = new ArrayList<>();
+                Set<String> clntIds = new HashSet<>();
+                long parsed = 0;
+                JobProgress.stage("parsing");
+                while (csv.next()) {
+                    if (++parsed % PROGRESS_ROWS == 0) {
+                        JobProgress.rows(PROGRESS_ROWS);
+                    }
+                    if (csv.isEmpty(clntIdCol) || csv.isEmpty(qtyCol) || csv.isEmpty(symbolCol)) {
+                        continue;
+                    }
 
+                    String clntId = csv.getString(clntIdCol);
+                    String settlementNo = settlementCol < 0 ? "" : csv.getString(settlementCol);
+                    auctions.add(new AuctionRow(settlementNo, clntId, csv.getString(symbolCol), csv.getInt(qtyCol)));
+                    clntIds.add(clntId);
+                }
 
-                                pushNotificationService.sendPush(pushReq);
+                JobProgress.rows(parsed % PROGRESS_ROWS);
+
+                // lookup in cust_mst once per distinct client
+                JobProgress.stage("queueing notifications");
+                Map<String, ClientContact> contacts = clientContactResolver.resolve(conn, clntIds);
+
+                List<NotificationMessageRequest<ShortageEmailTemplateData>> emailReqs = new ArrayList<>(auctions.size());
+                List<NotificationMessageRequest<Map<String, Object>>> pushReqs = new ArrayList<>(auctions.size());
+                List<NotificationKey> emailKeys = new ArrayList<>();
+                List<NotificationKey> pushKeys = new ArrayList<>();
+                Map<NotificationKey, Integer> queued = new HashMap<>();
+                for (AuctionRow auction : auctions) {
+                    ClientContact contact = contacts.get(auction.getClntId());
+                    if (contact == null) {
+                        continue;
+                    }
+                    String clntId = auction.getClntId();
+                    String symbol = auction.getSecuritySymbol();
+                    int qty = auction.getQuantity();
+
+                    // --- Build Email Notification ---
+                    NotificationKey emailKey = auctionKey(auction, NotificationChannel.EMAIL);
+                    if (notificationStateStore.needsNotification(emailKey, qty)) {
+                        ShortageEmailTemplateData emailData = new ShortageEmailTemplateData();
+                        emailData.setSYMBOL(symbol);
+                        emailData.setQTY(qty);
+
+                        emailReqs.add(NotificationMessageRequest.<ShortageEmailTemplateData>builder()
+                                .receivers(Collections.singletonList(contact.getEmail()))
+                                .templateName(AUCTION_TEMPLATE)
+                                .templateDataJson(emailData)
+                                .build());
+                        emailKeys.add(emailKey);
+                        queued.put(emailKey, qty);
+                    }
 
-                                log.info("Auction notification sent for Client=" + clntId +
-                                        ", Symbol=" + symbol + ", Qty=" + qty);
-                            }
-                        }
+                    // --- Build Push Notification ---
+                    NotificationKey pushKey = auctionKey(auction, NotificationChannel.PUSH);
+                    if (notificationStateStore.needsNotification(pushKey, qty)) {
+                        Map<String, Object> templateData = new HashMap<>();
+                        templateData.put("SYMBOL", symbol);
+                        templateData.put("QTY", qty);
+                        pushReqs.add(NotificationMessageRequest.<Map<String, Object>>builder()
+                                .receivers(Collections.singletonList(clntId))
+                                .templateName(AUCTION_TEMPLATE)
+                                .templateDataJson(templateData)
+                                .build());
+                        pushKeys.add(pushKey);
+                        queued.put(pushKey, qty);
                     }
                 }
-            }
 
-            // Disconnect FTP
-            ftpClient.logout();
-            ftpClient.disconnect();
+                List<OutboundNotification> messages = new ArrayList<>();
+                Map<NotificationKey, Integer> messageOf = new HashMap<>();
+                for (NotificationBatcher.Batch<ShortageEmailTemplateData> emailBatch : notificationBatcher.batch(emailReqs)) {
+                    linkMessage(messageOf, emailKeys, emailBatch, messages.size());
+                    messages.add(emailNotificationService.composeEmailNotification(emailBatch.getRequest()));
+                }
+                for (NotificationBatcher.Batch<Map<String, Object>> pushBatch : notificationBatcher.batch(pushReqs)) {
+                    linkMessage(messageOf, pushKeys, pushBatch, messages.size());
+                    messages.add(pushNotificationService.composePush(toPushRequest(pushBatch.getRequest())));
+                }
+                conn.setAutoCommit(false);
+                try {
+                    enqueueWithState(conn, messages, messageOf, queued);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                notificationStateStore.remember(queued);
+                log.info("Auction notifications queued for " + pushReqs.size() + " settlements");
+                // Rows with a blank field, without a cust_mst contact or already notified are not queued
+                countRows("auction", "parsed", parsed);
+                countRows("auction", "queued", pushReqs.size());
+                countRows("auction", "skipped", parsed - pushReqs.size());
+            }
+            outboxRelay.wakeUp();
 
-            return "Processed Auction file and sent notifications.";
+            return "Processed Auction file and queued notifications.";
 
         } catch (Exception e) {
-            e.printStackTrace();
-            try {
-                if (ftpClient.isConnected()) {
-                    ftpClient.logout();
-                    ftpClient.disconnect();
-                }
-            } catch (Exception ignored) {}
+            log.error("Failed to process Auction file", e);
             return "Error: " + e.getMessage();
         }
     }
 
+    /** Auction settlements already notified with the same quantity are not notified again. */
+    private static NotificationKey auctionKey(AuctionRow auction, NotificationChannel channel) {
+        return new NotificationKey(auction.getClntId(), auction.getSecuritySymbol(), auction.getSettlementNo(),
+                channel, AUCTION_TEMPLATE);
+    }
+
 }
 
@@ -0,0 +1,139 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams a gzipped file straight off an FTP data connection.
+ * <p>
+ * Bytes are decompressed and handed to the reader as they arrive, so memory use is bounded by
+ * the buffer sizes below rather than by the size of the file. Closing the stream finishes the
+ * transfer with {@link FTPClient#completePendingCommand()} so the client can be reused.
+ */
+public class FtpDownloadStream implements Closeable {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FTPClient ftpClient;
+    private final String remotePath;
+    private final TrackingInputStream rawIn;
+    private final TrackingInputStream dataIn;
+    private boolean closed;
+
+    private FtpDownloadStream(FTPClient ftpClient, String remotePath, InputStream rawIn, boolean gunzip) throws IOException {
+        this.ftpClient = ftpClient;
+        this.remotePath = remotePath;
+        this.rawIn = new TrackingInputStream(rawIn);
+        this.dataIn = gunzip ? new TrackingInputStream(new GZIPInputStream(this.rawIn, BUFFER_SIZE)) : this.rawIn;
+    }
+
+    /**
+     * Opens the data connection for {@code remotePath}. The client must already be logged in and
+     * set to binary mode.
+     */
+    public static FtpDownloadStream open(FTPClient ftpClient, String remotePath) throws IOException {
+        return open(ftpClient, remotePath, true);
+    }
+
+    /**
+     * Like {@link #open} but {@link #inputStream()} returns the file as stored, still compressed,
+     * for callers that decompress on another thread.
+     */
+    public static FtpDownloadStream openRaw(FTPClient ftpClient, String remotePath) throws IOException {
+        return open(ftpClient, remotePath, false);
+    }
+
+    private static FtpDownloadStream open(FTPClient ftpClient, String remotePath, boolean gunzip) throws IOException {
+        InputStream in = ftpClient.retrieveFileStream(remotePath);
+        if (in == null) {
+            throw new IOException("Failed to download: " + remotePath + " (" + ftpClient.getReplyString().trim() + ")");
+        }
+        try {
+            return new FtpDownloadStream(ftpClient, remotePath, in, gunzip);
+        } catch (IOException e) {
+            // Not a gzip stream: drop the data connection and clear the pending reply
+            in.close();
+            ftpClient.completePendingCommand();
+            throw e;
+        }
+    }
+
+    /** Decompressed content of the file (as stored when opened with {@link #openRaw}). */
+    public InputStream inputStream() {
+        return dataIn;
+    }
+
+    /** Decompressed content of the file as UTF-8 text. */
+    public BufferedReader reader() {
+        return new BufferedReader(new InputStreamReader(dataIn, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /** Compressed bytes pulled off the data connection so far. */
+    public long bytesTransferred() {
+        return rawIn.count;
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dataIn.close();
+        // A reader that stops early aborts the transfer, so a failure reply is only an error
+        // when the whole file was consumed
+        if (!ftpClient.completePendingCommand() && dataIn.eof) {
+            throw new IOException("Transfer did not complete for " + remotePath + ": " + ftpClient.getReplyString().trim());
+        }
+    }
+
+    private static final class TrackingInputStream extends FilterInputStream {
+        private long count;
+        private boolean eof;
+
+        TrackingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            } else {
+                eof = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            } else if (n < 0) {
+                eof = true;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
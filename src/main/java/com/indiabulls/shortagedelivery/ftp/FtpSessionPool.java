@@ -0,0 +1,396 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPReply;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Fixed set of logged-in FTP connections shared by the loaders, each used by one thread at a time.
+ * <p>
+ * A slot connects and logs in the first time it is borrowed and stays logged in afterwards. Idle
+ * connections get a NOOP every {@code ftp.pool.keepalive-ms} so the server doesn't drop them, and
+ * are closed once idle for {@code ftp.pool.max-idle-ms} (e.g. between scheduler windows). A
+ * connection that fails its NOOP when returned is dropped and the slot logs in again on its next
+ * borrow. Directory listings are cached for {@code ftp.listing.ttl-ms}.
+ * <p>
+ * Latency of every FTP command is timed as {@code shortage.ftp.operation} (op = connect, login,
+ * list, noop, transfer); downloads also record {@code shortage.ftp.transfer.bytes} and
+ * {@code shortage.ftp.transfer.rate} in bytes per second.
+ */
+@Slf4j
+@Component
+public class FtpSessionPool {
+
+    private final String server;
+    private final int port;
+    private final String user;
+    private final String pass;
+    private final long borrowTimeoutMs;
+    private final long keepaliveMs;
+    private final long maxIdleMs;
+    private final long listingTtlMs;
+    /** Most recently used first, so warm connections are reused and the rest can idle out. */
+    private final BlockingDeque<Slot> idle;
+    private final Slot[] slots;
+    private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService keepalive;
+
+    private final Timer connectTimer;
+    private final Timer loginTimer;
+    private final Timer listTimer;
+    private final Timer noopTimer;
+    private final Timer transferTimer;
+    private final DistributionSummary transferBytes;
+    private final DistributionSummary transferRate;
+    private final Counter listingHits;
+    private final Counter listingMisses;
+
+    public FtpSessionPool(@Value("${ftp.server}") String server,
+                          @Value("${ftp.port:21}") int port,
+                          @Value("${ftp.user}") String user,
+                          @Value("${ftp.pass}") String pass,
+                          @Value("${ftp.pool.size:3}") int size,
+                          @Value("${ftp.pool.borrow-timeout-ms:60000}") long borrowTimeoutMs,
+                          @Value("${ftp.pool.keepalive-ms:60000}") long keepaliveMs,
+                          @Value("${ftp.pool.max-idle-ms:1800000}") long maxIdleMs,
+                          @Value("${ftp.listing.ttl-ms:60000}") long listingTtlMs,
+                          MeterRegistry meterRegistry) {
+        this.server = server;
+        this.port = port;
+        this.user = user;
+        this.pass = pass;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.keepaliveMs = keepaliveMs;
+        this.maxIdleMs = maxIdleMs;
+        this.listingTtlMs = listingTtlMs;
+        this.idle = new LinkedBlockingDeque<>(size);
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i);
+            idle.add(slots[i]);
+        }
+
+        this.connectTimer = operationTimer("connect", meterRegistry);
+        this.loginTimer = operationTimer("login", meterRegistry);
+        this.listTimer = operationTimer("list", meterRegistry);
+        this.noopTimer = operationTimer("noop", meterRegistry);
+        this.transferTimer = operationTimer("transfer", meterRegistry);
+        this.transferBytes = DistributionSummary.builder("shortage.ftp.transfer.bytes").baseUnit("bytes")
+                .register(meterRegistry);
+        this.transferRate = DistributionSummary.builder("shortage.ftp.transfer.rate").baseUnit("bytes/s")
+                .register(meterRegistry);
+        this.listingHits = Counter.builder("shortage.ftp.listing.cache").tag("result", "hit").register(meterRegistry);
+        this.listingMisses = Counter.builder("shortage.ftp.listing.cache").tag("result", "miss").register(meterRegistry);
+
+        this.keepalive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ftp-keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        if (keepaliveMs > 0) {
+            keepalive.scheduleWithFixedDelay(this::keepIdleSessionsAlive, keepaliveMs, keepaliveMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Borrows a logged-in connection in binary passive mode; close the session to return it.
+     */
+    public Session borrow() throws IOException {
+        Slot slot;
+        try {
+            slot = idle.pollFirst(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an FTP connection", e);
+        }
+        if (slot == null) {
+            throw new IOException("No FTP connection available within " + borrowTimeoutMs + " ms");
+        }
+        try {
+            slot.ensureLoggedIn();
+        } catch (IOException | RuntimeException e) {
+            slot.disconnect();
+            idle.addLast(slot);
+            throw e;
+        }
+        return new Session(slot);
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public int idleCount() {
+        return idle.size();
+    }
+
+    /** Drops cached listings, e.g. after files were uploaded. */
+    public void invalidateListings() {
+        listings.clear();
+    }
+
+    @PreDestroy
+    public void close() {
+        keepalive.shutdownNow();
+        for (Slot slot : slots) {
+            slot.disconnect();
+        }
+    }
+
+    private static Timer operationTimer(String op, MeterRegistry meterRegistry) {
+        return Timer.builder("shortage.ftp.operation").tag("op", op).register(meterRegistry);
+    }
+
+    /** NOOPs the connections idle since the last round and closes those idle for too long. */
+    private void keepIdleSessionsAlive() {
+        List<Slot> checked = new ArrayList<>(slots.length);
+        Slot slot;
+        while ((slot = idle.pollFirst()) != null) {
+            checked.add(slot);
+        }
+        long now = System.currentTimeMillis();
+        try {
+            for (Slot s : checked) {
+                if (!s.client.isConnected()) {
+                    continue;
+                }
+                if (now - s.lastUsedMillis > maxIdleMs) {
+                    log.info("Closing FTP connection {} idle for {} ms", s.index, now - s.lastUsedMillis);
+                    s.disconnect();
+                } else if (!s.noop()) {
+                    s.disconnect();
+                }
+            }
+        } finally {
+            checked.forEach(idle::addLast);
+        }
+    }
+
+    /**
+     * A borrowed connection. Each session has exclusive use of its connection until closed.
+     */
+    public final class Session implements Closeable {
+
+        private final Slot slot;
+        private final List<FtpDownloadStream> downloads = new ArrayList<>(1);
+        private final List<Long> downloadStarts = new ArrayList<>(1);
+        private boolean closed;
+
+        private Session(Slot slot) {
+            this.slot = slot;
+        }
+
+        /** The logged-in client, for commands the session has no method for. */
+        public FTPClient client() {
+            return slot.client;
+        }
+
+        /**
+         * Lists {@code directory}, served from the cache when the last listing is younger than
+         * {@code ftp.listing.ttl-ms}.
+         */
+        public List<FTPFile> listFiles(String directory) throws IOException {
+            Listing cached = listings.get(directory);
+            if (cached != null && !cached.isExpired()) {
+                listingHits.increment();
+                return cached.files;
+            }
+            listingMisses.increment();
+            FTPFile[] files = timed(listTimer, () -> slot.client.listFiles(directory));
+            Listing listing = new Listing(Collections.unmodifiableList(Arrays.asList(files)));
+            listings.put(directory, listing);
+            return listing.files;
+        }
+
+        /**
+         * First file in {@code directory} whose name matches {@code regex}. A cached listing without
+         * a match is refreshed once, so a file uploaded since the listing was cached is found.
+         */
+        public Optional<FTPFile> findFile(String directory, String regex) throws IOException {
+            Pattern pattern = Pattern.compile(regex);
+            boolean fromCache = listings.containsKey(directory);
+            Optional<FTPFile> match = find(listFiles(directory), pattern);
+            if (!match.isPresent() && fromCache) {
+                listings.remove(directory);
+                match = find(listFiles(directory), pattern);
+            }
+            return match;
+        }
+
+        /** Streams a gzipped file, decompressed; see {@link FtpDownloadStream#open}. */
+        public FtpDownloadStream download(String remotePath) throws IOException {
+            return track(FtpDownloadStream.open(slot.client, remotePath));
+        }
+
+        /** Streams a file as stored; see {@link FtpDownloadStream#openRaw}. */
+        public FtpDownloadStream downloadRaw(String remotePath) throws IOException {
+            return track(FtpDownloadStream.openRaw(slot.client, remotePath));
+        }
+
+        /**
+         * Closes any download still open, records the transfer metrics and returns the connection
+         * to the pool.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                for (int i = 0; i < downloads.size(); i++) {
+                    FtpDownloadStream download = downloads.get(i);
+                    try {
+                        download.close();
+                    } catch (IOException e) {
+                        log.warn("Error finishing FTP transfer of {}", download.getRemotePath(), e);
+                    }
+                    recordTransfer(download.bytesTransferred(), System.nanoTime() - downloadStarts.get(i));
+                }
+                // A connection left mid-command (e.g. a failed transfer) is not handed out again
+                if (!slot.noop()) {
+                    slot.disconnect();
+                }
+            } finally {
+                slot.lastUsedMillis = System.currentTimeMillis();
+                idle.addFirst(slot);
+            }
+        }
+
+        private FtpDownloadStream track(FtpDownloadStream download) {
+            downloads.add(download);
+            downloadStarts.add(System.nanoTime());
+            return download;
+        }
+
+        private Optional<FTPFile> find(List<FTPFile> files, Pattern pattern) {
+            return files.stream()
+                    .filter(file -> file != null && pattern.matcher(file.getName()).matches())
+                    .findFirst();
+        }
+    }
+
+    private void recordTransfer(long bytes, long nanos) {
+        transferTimer.record(nanos, TimeUnit.NANOSECONDS);
+        transferBytes.record(bytes);
+        if (nanos > 0) {
+            transferRate.record(bytes * 1e9 / nanos);
+        }
+    }
+
+    @FunctionalInterface
+    private interface FtpCommand<T> {
+        T run() throws IOException;
+    }
+
+    private static <T> T timed(Timer timer, FtpCommand<T> command) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return command.run();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final class Listing {
+        private final List<FTPFile> files;
+        private final long listedAt = System.currentTimeMillis();
+
+        private Listing(List<FTPFile> files) {
+            this.files = files;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - listedAt > listingTtlMs;
+        }
+    }
+
+    private final class Slot {
+        private final int index;
+        private final FTPClient client = new FTPClient();
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        /** Only called by the thread holding the slot. */
+        private void ensureLoggedIn() throws IOException {
+            if (client.isConnected()) {
+                return;
+            }
+            timed(connectTimer, () -> {
+                client.connect(server, port);
+                return null;
+            });
+            if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+                String reply = client.getReplyString();
+                disconnect();
+                throw new IOException("FTP server refused connection: " + reply.trim());
+            }
+            boolean loggedIn = timed(loginTimer, () -> client.login(user, pass));
+            if (!loggedIn) {
+                String reply = client.getReplyString();
+                disconnect();
+                throw new IOException("FTP login failed: " + reply.trim());
+            }
+            client.enterLocalPassiveMode();
+            client.setFileType(FTP.BINARY_FILE_TYPE);
+            log.info("FTP connection {} logged in to {}", index, server);
+        }
+
+        /** @return false if the connection is no longer usable */
+        private boolean noop() {
+            if (!client.isConnected()) {
+                return true;
+            }
+            try {
+                return timed(noopTimer, client::sendNoOp);
+            } catch (IOException | RuntimeException e) {
+                log.warn("FTP connection {} failed keepalive: {}", index, e.getMessage());
+                return false;
+            }
+        }
+
+        private void disconnect() {
+            if (!client.isConnected()) {
+                return;
+            }
+            try {
+                client.logout();
+            } catch (IOException e) {
+                log.debug("Error logging out FTP connection {}", index, e);
+            }
+            try {
+                client.disconnect();
+            } catch (IOException e) {
+                log.debug("Error closing FTP connection {}", index, e);
+            }
+        }
+    }
+}
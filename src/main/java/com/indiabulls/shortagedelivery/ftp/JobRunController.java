@@ -0,0 +1,57 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import com.indiabulls.shortagedelivery.scheduler.JobDagEngine;
+import com.indiabulls.shortagedelivery.scheduler.JobRun;
+import com.indiabulls.shortagedelivery.scheduler.JobStep;
+import com.indiabulls.shortagedelivery.scheduler.ShortageDeliveryScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+public class JobRunController {
+
+    @Autowired
+    private JobDagEngine jobDagEngine;
+
+    @Autowired
+    private ShortageDeliveryScheduler shortageDeliveryScheduler;
+
+    /**
+     * Starts a job on the job engine's pool and returns at once with 202 and the run, whose
+     * progress is at {@code /jobs/runs/{id}}. A trigger while the same job, or another job sharing
+     * one of its steps, is running returns that run instead of starting another.
+     */
+    @PostMapping("/jobs/{job}")
+    public ResponseEntity<JobRun> startJob(@PathVariable String job) {
+        Optional<List<JobStep>> steps = shortageDeliveryScheduler.jobSteps(job);
+        if (!steps.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        JobRun run = jobDagEngine.startOrJoin(job, steps.get());
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/runs/" + run.getId()))
+                .body(run);
+    }
+
+    /** Recent scheduler runs, newest first, with per-step status and duration. */
+    @GetMapping("/jobs/runs")
+    public List<JobRun> getRuns() {
+        return jobDagEngine.history();
+    }
+
+    /** A run with its running steps, and per step the rows processed, rows per second and ETA. */
+    @GetMapping("/jobs/runs/{id}")
+    public ResponseEntity<JobRun> getRun(@PathVariable long id) {
+        return jobDagEngine.findRun(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
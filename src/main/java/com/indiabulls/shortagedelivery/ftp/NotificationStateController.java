@@ -0,0 +1,32 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import com.indiabulls.shortagedelivery.notification.state.NotificationStateStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.sql.SQLException;
+
+@RestController
+public class NotificationStateController {
+
+    @Autowired
+    private NotificationStateStore notificationStateStore;
+
+    @GetMapping("/notification-state")
+    public String getState() {
+        return notificationStateStore.size() + " shortage notifications recorded as sent";
+    }
+
+    /** Forgets what was sent, so the next run notifies every current shortage again. */
+    @DeleteMapping("/notification-state")
+    public String clear() {
+        try {
+            notificationStateStore.clear();
+            return "Notification state cleared";
+        } catch (SQLException e) {
+            return "Error: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import com.indiabulls.shortagedelivery.notification.outbox.OutboxRelay;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.sql.SQLException;
+
+@RestController
+public class OutboxController {
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @GetMapping("/outbox")
+    public String getStatus() {
+        try {
+            return "Notification outbox: " + outboxRelay.statusCounts();
+        } catch (SQLException e) {
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    /** Requeues messages that used up their retries, e.g. after a broker outage. */
+    @PostMapping("/outbox/retry-failed")
+    public String retryFailed() {
+        try {
+            return "Requeued " + outboxRelay.retryFailed() + " failed notifications";
+        } catch (SQLException e) {
+            return "Error: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One usable row of the Auction settlement file.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuctionRow {
+    private String settlementNo;    // SctiesSttlmTxId, blank if the file has no such column
+    private String clntId;          // ClntId
+    private String securitySymbol;  // TckrSymb
+    private int quantity;           // QtyORShrtQty
+}
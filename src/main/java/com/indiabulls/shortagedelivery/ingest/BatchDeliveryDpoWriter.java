@@ -0,0 +1,56 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Plain JDBC INSERT batches, executed every {@code batchSize} rows so the driver never holds the
+ * whole file.
+ */
+class BatchDeliveryDpoWriter implements DeliveryDpoWriter {
+
+    private final PreparedStatement ps;
+    private final int batchSize;
+    private int pending;
+    private long written;
+
+    BatchDeliveryDpoWriter(Connection conn, String table, int batchSize) throws SQLException {
+        this.ps = conn.prepareStatement("INSERT INTO " + table + " " + COLUMNS + " VALUES (?, ?, ?, ?, ?)");
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void write(DeliveryDpoRow row) throws SQLException {
+        ps.setString(1, row.getSettlementNo());
+        ps.setString(2, row.getClntId());       // TEXT
+        ps.setInt(3, row.getQtyReceived());     // INTEGER
+        ps.setString(4, row.getSecuritySymbol()); // TEXT
+        ps.setString(5, row.getIsin());         // TEXT
+        ps.addBatch();
+
+        if (++pending >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public long finish() throws SQLException {
+        flush();
+        return written;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        ps.close();
+    }
+
+    private void flush() throws SQLException {
+        if (pending == 0) {
+            return;
+        }
+        ps.executeBatch();
+        written += pending;
+        pending = 0;
+    }
+}
@@ -0,0 +1,91 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into the table with {@code COPY ... FROM STDIN} in CSV format.
+ * <p>
+ * The driver sends the COPY data as its buffer fills, so nothing is held per row.
+ */
+class CopyDeliveryDpoWriter implements DeliveryDpoWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String table;
+    private final PGCopyOutputStream copyOut;
+    private final Writer out;
+
+    CopyDeliveryDpoWriter(Connection conn, String table) throws SQLException {
+        this.table = table;
+        String copySql = "COPY " + table + " " + COLUMNS + " FROM STDIN WITH (FORMAT csv)";
+        this.copyOut = new PGCopyOutputStream(conn.unwrap(PGConnection.class), copySql, BUFFER_SIZE);
+        this.out = new BufferedWriter(new OutputStreamWriter(copyOut, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(DeliveryDpoRow row) throws SQLException {
+        try {
+            writeText(row.getSettlementNo());
+            out.write(',');
+            writeText(row.getClntId());
+            out.write(',');
+            out.write(Integer.toString(row.getQtyReceived()));
+            out.write(',');
+            writeText(row.getSecuritySymbol());
+            out.write(',');
+            writeText(row.getIsin());
+            out.write('\n');
+        } catch (IOException e) {
+            throw new SQLException("COPY into " + table + " failed", e);
+        }
+    }
+
+    @Override
+    public long finish() throws SQLException {
+        try {
+            out.flush();
+            return copyOut.endCopy();
+        } catch (IOException e) {
+            throw new SQLException("COPY into " + table + " failed", e);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (copyOut.isActive()) {
+            copyOut.cancelCopy();
+        }
+    }
+
+    /**
+     * Writes a text column. Values are always quoted: an unquoted empty field would be read as
+     * NULL, while the JDBC path stores an empty string.
+     */
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        out.write('"');
+        if (value.indexOf('"') < 0) {
+            out.write(value);
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    out.write('"');
+                }
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,315 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming CSV tokenizer working directly on the (decompressed) bytes of a file.
+ * <p>
+ * Each call to {@link #next()} locates one row in an internal buffer and records where its fields
+ * start and end; nothing is allocated per row or per field unless a field is explicitly turned
+ * into a {@code String}. Fields are trimmed of surrounding blanks, quoted fields may contain
+ * commas, line breaks and doubled quotes, CRLF line endings are accepted and blank lines are
+ * skipped. Field accessors are only valid until the next call to {@link #next()}.
+ */
+public class CsvTokenizer implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private FieldView[] views = new FieldView[0];
+    private int fieldCount;
+    private long rowNumber;
+
+    public CsvTokenizer(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvTokenizer(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Advances to the next non-blank row.
+     *
+     * @return false at the end of the input
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (pos >= limit && !fill()) {
+                return false;
+            }
+            int i = pos;
+            int rowEnd = -1;
+            boolean quoted = false;
+            while (rowEnd < 0) {
+                for (; i < limit; i++) {
+                    byte b = buf[i];
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == '\n' && !quoted) {
+                        rowEnd = i;
+                        break;
+                    }
+                }
+                if (rowEnd < 0) {
+                    int shift = pos;
+                    boolean more = fill();
+                    i -= shift;
+                    if (!more) {
+                        rowEnd = limit;     // last row without a line break
+                    }
+                }
+            }
+
+            int start = pos;
+            int end = rowEnd;
+            pos = rowEnd < limit ? rowEnd + 1 : limit;
+            if (end > start && buf[end - 1] == '\r') {
+                end--;
+            }
+            if (end > start) {
+                split(start, end);
+                rowNumber++;
+                return true;
+            }
+        }
+    }
+
+    /** Rows returned so far, counting the header. */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /** Index of the first field of the current row equal to {@code name}, or -1. */
+    public int indexOf(String name) {
+        for (int i = 0; i < fieldCount; i++) {
+            if (equals(i, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty(int field) {
+        check(field);
+        return starts[field] == ends[field];
+    }
+
+    /**
+     * The field as a view over the buffer, decoding each byte as one char (so only meaningful for
+     * ASCII content). Valid until the next row is read.
+     */
+    public CharSequence get(int field) {
+        check(field);
+        if (field >= views.length) {
+            int old = views.length;
+            views = Arrays.copyOf(views, Math.max(field + 1, old * 2));
+            for (int i = old; i < views.length; i++) {
+                views[i] = new FieldView(i);
+            }
+        }
+        return views[field];
+    }
+
+    public String getString(int field) {
+        check(field);
+        return new String(buf, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the field as a decimal int without creating a String.
+     *
+     * @throws NumberFormatException if the field is empty, not a number or out of range
+     */
+    public int getInt(int field) {
+        check(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            throw notANumber(field);
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw notANumber(field);
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw notANumber(field);
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw notANumber(field);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean equals(int field, String value) {
+        int len = ends[field] - starts[field];
+        if (len != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if ((buf[starts[field] + i] & 0xff) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Records the fields of the row in buf[start, end), unescaping quoted fields in place. */
+    private void split(int start, int end) {
+        fieldCount = 0;
+        int i = start;
+        while (true) {
+            int fieldStart = i;
+            while (fieldStart < end && isBlank(buf[fieldStart])) {
+                fieldStart++;
+            }
+            if (fieldStart < end && buf[fieldStart] == '"') {
+                int read = fieldStart + 1;
+                int write = read;
+                while (read < end) {
+                    byte b = buf[read++];
+                    if (b == '"') {
+                        if (read < end && buf[read] == '"') {
+                            read++;
+                        } else {
+                            break;
+                        }
+                    }
+                    buf[write++] = b;
+                }
+                addField(fieldStart + 1, write);
+                while (read < end && buf[read] != ',') {
+                    read++;
+                }
+                i = read;
+            } else {
+                int fieldEnd = fieldStart;
+                while (fieldEnd < end && buf[fieldEnd] != ',') {
+                    fieldEnd++;
+                }
+                i = fieldEnd;
+                while (fieldEnd > fieldStart && isBlank(buf[fieldEnd - 1])) {
+                    fieldEnd--;
+                }
+                addField(fieldStart, fieldEnd);
+            }
+            if (i >= end) {
+                return;
+            }
+            i++;    // the comma
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer (growing it if a single row fills it) and
+     * reads more input after them.
+     *
+     * @return false if the input is exhausted
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int remaining = limit - pos;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        } else if (remaining == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        pos = 0;
+        limit = remaining;
+        int n;
+        do {
+            n = in.read(buf, limit, buf.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private void check(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IllegalArgumentException("Row " + rowNumber + " has " + fieldCount + " fields, no field " + field);
+        }
+    }
+
+    private NumberFormatException notANumber(int field) {
+        return new NumberFormatException("Row " + rowNumber + ", field " + field + ": not an int: '" + getString(field) + "'");
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private final class FieldView implements CharSequence {
+        private final int field;
+
+        private FieldView(int field) {
+            this.field = field;
+        }
+
+        @Override
+        public int length() {
+            return ends[field] - starts[field];
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buf[starts[field] + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return getString(field);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Opens the configured {@link DeliveryDpoWriter} for a DeliveryDPO load.
+ * <p>
+ * {@code copy} (the default) streams rows with the PostgreSQL COPY protocol; {@code batch} falls
+ * back to JDBC INSERT batches, e.g. for a pooler or proxy that does not pass COPY through.
+ * With {@code shortage.dpo.writers} above 1, {@link #openParallel} spreads the rows over that
+ * many pooled connections. Those write into UNLOGGED staging tables, and a load that dies before
+ * dropping its table leaves it behind; at startup, tables older than
+ * {@code shortage.dpo.stage-max-age} are dropped.
+ */
+@Slf4j
+@Component
+public class DeliveryDpoBulkLoader {
+
+    public enum Mode { COPY, BATCH }
+
+    @Value("${shortage.dpo.load-mode:copy}")
+    private String loadMode;
+
+    @Value("${shortage.dpo.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${shortage.dpo.writers:1}")
+    private int writers;
+
+    @Value("${shortage.dpo.chunk-rows:5000}")
+    private int chunkRows;
+
+    @Value("${shortage.dpo.stage-max-age:6h}")
+    private Duration stageMaxAge;
+
+    private final DataSource dataSource;
+    private final ShortDeliveryMerger shortDeliveryMerger;
+
+    public DeliveryDpoBulkLoader(DataSource dataSource, ShortDeliveryMerger shortDeliveryMerger) {
+        this.dataSource = dataSource;
+        this.shortDeliveryMerger = shortDeliveryMerger;
+    }
+
+    @PostConstruct
+    public void dropStaleStages() {
+        try (Connection conn = dataSource.getConnection()) {
+            List<String> dropped = shortDeliveryMerger.dropStaleSharedStages(conn, stageMaxAge);
+            if (!dropped.isEmpty()) {
+                log.warn("Dropped {} staging tables left behind by earlier DPO loads: {}", dropped.size(), dropped);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to drop stale DPO staging tables", e);
+        }
+    }
+
+    /** Configured number of writer connections for {@link #openParallel}. */
+    public int getWriters() {
+        return writers;
+    }
+
+    public DeliveryDpoWriter open(Connection conn, String table) throws SQLException {
+        return open(conn, table, Mode.valueOf(loadMode.trim().toUpperCase()), batchSize);
+    }
+
+    /**
+     * Writes over {@code shortage.dpo.writers} connections of their own; {@code table} must be a
+     * shared staging table (see {@link ShortDeliveryMerger#createSharedStage}).
+     */
+    public DeliveryDpoWriter openParallel(String table) {
+        return openParallel(dataSource, table, Mode.valueOf(loadMode.trim().toUpperCase()), batchSize, writers, chunkRows);
+    }
+
+    public static DeliveryDpoWriter openParallel(DataSource dataSource, String table, Mode mode, int batchSize,
+                                                 int writers, int chunkRows) {
+        return new ParallelDeliveryDpoWriter(dataSource, table, mode, batchSize, writers, chunkRows);
+    }
+
+    public static DeliveryDpoWriter open(Connection conn, String table, Mode mode, int batchSize) throws SQLException {
+        switch (mode) {
+            case COPY:
+                return new CopyDeliveryDpoWriter(conn, table);
+            case BATCH:
+                return new BatchDeliveryDpoWriter(conn, table, batchSize);
+            default:
+                throw new IllegalArgumentException("Unsupported load mode: " + mode);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import com.indiabulls.shortagedelivery.scheduler.JobProgress;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads a gzipped DeliveryDPO file through four overlapping stages:
+ * <pre>
+ *   read (FTP) → [compressed] → gunzip → [decompressed] → parse → [batches] → write (caller thread)
+ * </pre>
+ * The stages are connected by bounded queues of {@code shortage.dpo.pipeline.queue-capacity}
+ * entries, so a slow stage holds back the ones before it instead of buffering the file in memory.
+ * Row batches are recycled between the parse and write stages.
+ * <p>
+ * Each stage reports how long it was busy and how long it waited on its queues; the stage with
+ * the most busy time is the bottleneck and the run takes about as long as it does. Queue depths
+ * are published as {@code shortage.dpo.pipeline.queue.depth} and stage times as
+ * {@code shortage.dpo.pipeline.stage}.
+ */
+@Slf4j
+@Component
+public class DeliveryDpoPipeline {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final long POLL_MS = 100;
+    private static final byte[] END_OF_DATA = new byte[0];
+    private static final RowBatch END_OF_ROWS = new RowBatch(0);
+
+    private final int queueCapacity;
+    private final int batchSize;
+    private final MeterRegistry meterRegistry;
+
+    // Queues of the current run, read by the depth gauges
+    private final AtomicReference<BlockingQueue<?>> compressedQueue = new AtomicReference<>();
+    private final AtomicReference<BlockingQueue<?>> decompressedQueue = new AtomicReference<>();
+    private final AtomicReference<BlockingQueue<?>> batchQueue = new AtomicReference<>();
+
+    public DeliveryDpoPipeline(@Value("${shortage.dpo.pipeline.queue-capacity:16}") int queueCapacity,
+                               @Value("${shortage.dpo.batch-size:5000}") int batchSize,
+                               MeterRegistry meterRegistry) {
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.meterRegistry = meterRegistry;
+        depthGauge("compressed", compressedQueue);
+        depthGauge("decompressed", decompressedQueue);
+        depthGauge("batches", batchQueue);
+    }
+
+    /**
+     * Reads the gzipped file from {@code compressed} and writes every row to {@code writer},
+     * finishing it. Commit is left to the caller. A file without even a header line loads no rows
+     * and is flagged as {@link PipelineReport#isEmptyFile() empty}.
+     *
+     * @throws IOException if reading, decompressing or parsing fails, including a missing header
+     */
+    public PipelineReport load(InputStream compressed, DeliveryDpoWriter writer) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Run run = new Run();
+        compressedQueue.set(run.compressed);
+        decompressedQueue.set(run.decompressed);
+        batchQueue.set(run.full);
+
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "dpo-pipeline-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long rows = 0;
+        try {
+            Future<?> read = executor.submit(() -> run.guard(run.readStage, () -> run.read(compressed)));
+            Future<?> gunzip = executor.submit(() -> run.guard(run.gunzipStage, run::gunzip));
+            Future<?> parse = executor.submit(() -> run.guard(run.parseStage, run::parse));
+            try {
+                run.write(writer);
+                rows = writer.finish();
+            } catch (SQLException | RuntimeException e) {
+                run.fail(e);
+            }
+            awaitQuietly(read);
+            awaitQuietly(gunzip);
+            awaitQuietly(parse);
+        } finally {
+            executor.shutdownNow();
+            compressedQueue.set(null);
+            decompressedQueue.set(null);
+            batchQueue.set(null);
+        }
+        run.rethrow();
+
+        PipelineReport report = new PipelineReport();
+        report.setRows(rows);
+        report.setEmptyFile(run.emptyFile);
+        report.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        for (Stage stage : run.stages()) {
+            PipelineReport.StageStats stats = new PipelineReport.StageStats();
+            stats.setBusyMillis(TimeUnit.NANOSECONDS.toMillis(stage.busyNanos()));
+            stats.setWaitMillis(TimeUnit.NANOSECONDS.toMillis(stage.waitNanos));
+            stats.setItems(stage.items);
+            report.getStages().put(stage.name, stats);
+            stageTimer(stage.name, "busy").record(stage.busyNanos(), TimeUnit.NANOSECONDS);
+            stageTimer(stage.name, "wait").record(stage.waitNanos, TimeUnit.NANOSECONDS);
+        }
+        log.info(report.summary());
+        return report;
+    }
+
+    private void depthGauge(String queue, AtomicReference<BlockingQueue<?>> holder) {
+        meterRegistry.gauge("shortage.dpo.pipeline.queue.depth", Tags.of("queue", queue), holder,
+                h -> h.get() == null ? 0 : h.get().size());
+    }
+
+    private Timer stageTimer(String stage, String state) {
+        return Timer.builder("shortage.dpo.pipeline.stage").tag("stage", stage).tag("state", state)
+                .register(meterRegistry);
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // failures are recorded by Run.guard
+        }
+    }
+
+    /** Raised inside a stage when another stage has failed. */
+    private static final class Aborted extends RuntimeException {
+        Aborted() {
+            super(null, null, false, false);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private static final class Stage {
+        private final String name;
+        private long startNanos;
+        private long endNanos;
+        private long waitNanos;
+        private long items;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        long busyNanos() {
+            return Math.max(0, endNanos - startNanos - waitNanos);
+        }
+    }
+
+    private static final class RowBatch {
+        private final DeliveryDpoRow[] rows;
+        private int size;
+
+        RowBatch(int capacity) {
+            rows = new DeliveryDpoRow[capacity];
+            for (int i = 0; i < capacity; i++) {
+                rows[i] = new DeliveryDpoRow();
+            }
+        }
+    }
+
+    /** State of one load: the queues, the per-stage counters and the first failure. */
+    private final class Run {
+        private final BlockingQueue<byte[]> compressed = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<byte[]> decompressed = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<RowBatch> full = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<RowBatch> free = new ArrayBlockingQueue<>(queueCapacity + 2);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile boolean emptyFile;
+
+        private final Stage readStage = new Stage("read");
+        private final Stage gunzipStage = new Stage("gunzip");
+        private final Stage parseStage = new Stage("parse");
+        private final Stage writeStage = new Stage("write");
+
+        Run() {
+            for (int i = 0; i < queueCapacity + 2; i++) {
+                free.add(new RowBatch(batchSize));
+            }
+        }
+
+        Stage[] stages() {
+            return new Stage[]{readStage, gunzipStage, parseStage, writeStage};
+        }
+
+        void guard(Stage stage, StageBody body) {
+            stage.startNanos = System.nanoTime();
+            try {
+                body.run();
+            } catch (Aborted e) {
+                // another stage failed first
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                stage.endNanos = System.nanoTime();
+            }
+        }
+
+        void fail(Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                log.error("DeliveryDPO pipeline failed", e);
+            }
+        }
+
+        void rethrow() throws IOException, SQLException {
+            Throwable e = failure.get();
+            if (e == null) {
+                return;
+            }
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            if (e instanceof SQLException) {
+                throw (SQLException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new IOException("DeliveryDPO pipeline failed", e);
+        }
+
+        /** Pulls compressed bytes off the FTP data connection in fixed-size chunks. */
+        void read(InputStream in) throws IOException {
+            while (true) {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int n = 0;
+                int r;
+                while (n < chunk.length && (r = in.read(chunk, n, chunk.length - n)) >= 0) {
+                    n += r;
+                }
+                if (n == 0) {
+                    break;
+                }
+                put(compressed, n == chunk.length ? chunk : Arrays.copyOf(chunk, n), readStage);
+                if (n < chunk.length) {
+                    break;
+                }
+            }
+            put(compressed, END_OF_DATA, readStage);
+        }
+
+        void gunzip() throws IOException {
+            QueueInputStream source = new QueueInputStream(compressed, gunzipStage);
+            try (InputStream in = new GZIPInputStream(source, CHUNK_SIZE)) {
+                while (true) {
+                    byte[] chunk = new byte[CHUNK_SIZE];
+                    int n = 0;
+                    int r;
+                    while (n < chunk.length && (r = in.read(chunk, n, chunk.length - n)) >= 0) {
+                        n += r;
+                    }
+                    if (n > 0) {
+                        put(decompressed, n == chunk.length ? chunk : Arrays.copyOf(chunk, n), gunzipStage);
+                    }
+                    if (n < chunk.length) {
+                        break;
+                    }
+                }
+                // Consume anything after the gzip trailer so the read stage can finish
+                source.drain();
+            }
+            put(decompressed, END_OF_DATA, gunzipStage);
+        }
+
+        void parse() throws IOException {
+            CsvTokenizer csv = new CsvTokenizer(new QueueInputStream(decompressed, parseStage));
+            if (!csv.next()) {
+                emptyFile = true;
+                put(full, END_OF_ROWS, parseStage);
+                return;
+            }
+            int settlementCol = csv.indexOf("SctiesSttlmTxId");
+            int clntIdCol = csv.indexOf("ClntId");
+            int qtyCol = csv.indexOf("QtyORShrtQty");
+            int symbolCol = csv.indexOf("TckrSymb");
+            int isinCol = csv.indexOf("ISIN");
+            if (settlementCol < 0 || clntIdCol < 0 || qtyCol < 0 || symbolCol < 0 || isinCol < 0) {
+                throw new IOException("Missing required headers in DeliveryDPO file!");
+            }
+
+            RowBatch batch = take(free, parseStage);
+            while (csv.next()) {
+                DeliveryDpoRow row = batch.rows[batch.size++];
+                row.setSettlementNo(csv.getString(settlementCol));
+                row.setClntId(csv.getString(clntIdCol));
+                row.setQtyReceived(csv.getInt(qtyCol));
+                row.setSecuritySymbol(csv.getString(symbolCol));
+                row.setIsin(csv.getString(isinCol));
+                if (batch.size == batch.rows.length) {
+                    put(full, batch, parseStage);
+                    batch = take(free, parseStage);
+                }
+            }
+            if (batch.size > 0) {
+                put(full, batch, parseStage);
+            }
+            put(full, END_OF_ROWS, parseStage);
+        }
+
+        void write(DeliveryDpoWriter writer) throws SQLException {
+            writeStage.startNanos = System.nanoTime();
+            try {
+                RowBatch batch;
+                while ((batch = take(full, writeStage)) != END_OF_ROWS) {
+                    for (int i = 0; i < batch.size; i++) {
+                        writer.write(batch.rows[i]);
+                    }
+                    JobProgress.rows(batch.size);
+                    batch.size = 0;
+                    free.add(batch);
+                    writeStage.items++;
+                }
+            } finally {
+                writeStage.endNanos = System.nanoTime();
+            }
+        }
+
+        <T> void put(BlockingQueue<T> queue, T item, Stage stage) {
+            long start = System.nanoTime();
+            try {
+                while (!queue.offer(item, POLL_MS, TimeUnit.MILLISECONDS)) {
+                    checkNotFailed();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Aborted();
+            } finally {
+                stage.waitNanos += System.nanoTime() - start;
+            }
+            if (item != END_OF_DATA && item != END_OF_ROWS) {
+                stage.items++;
+            }
+        }
+
+        <T> T take(BlockingQueue<T> queue, Stage stage) {
+            long start = System.nanoTime();
+            try {
+                T item;
+                while ((item = queue.poll(POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+                    checkNotFailed();
+                }
+                return item;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Aborted();
+            } finally {
+                stage.waitNanos += System.nanoTime() - start;
+            }
+        }
+
+        private void checkNotFailed() {
+            if (failure.get() != null) {
+                throw new Aborted();
+            }
+        }
+
+        /** Reads the chunks of a queue as one stream, up to the end marker. */
+        private final class QueueInputStream extends InputStream {
+            private final BlockingQueue<byte[]> queue;
+            private final Stage stage;
+            private byte[] chunk = new byte[0];
+            private int pos;
+
+            QueueInputStream(BlockingQueue<byte[]> queue, Stage stage) {
+                this.queue = queue;
+                this.stage = stage;
+            }
+
+            @Override
+            public int read() {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            /**
+             * Waits for the next chunk once the current one is used up, so it is 0 only at the end
+             * of the data: {@link GZIPInputStream} only looks for another member of a concatenated
+             * file when this is above 0 or the inflater still holds input.
+             */
+            @Override
+            public int available() {
+                if (chunk != END_OF_DATA && pos == chunk.length) {
+                    chunk = take(queue, stage);
+                    pos = 0;
+                }
+                return chunk == END_OF_DATA ? 0 : chunk.length - pos;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (chunk == END_OF_DATA) {
+                    return -1;
+                }
+                if (pos == chunk.length) {
+                    chunk = take(queue, stage);
+                    pos = 0;
+                    if (chunk == END_OF_DATA) {
+                        return -1;
+                    }
+                }
+                int n = Math.min(len, chunk.length - pos);
+                System.arraycopy(chunk, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            void drain() {
+                while (chunk != END_OF_DATA) {
+                    chunk = take(queue, stage);
+                }
+            }
+        }
+    }
+}
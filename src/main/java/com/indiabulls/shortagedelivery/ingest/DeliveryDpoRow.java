@@ -0,0 +1,19 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One parsed row of the DeliveryDPO file, in the column order of focus.short_delivery.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryDpoRow {
+    private String settlementNo;    // SctiesSttlmTxId
+    private String clntId;          // ClntId
+    private int qtyReceived;        // QtyORShrtQty
+    private String securitySymbol;  // TckrSymb
+    private String isin;            // ISIN
+}
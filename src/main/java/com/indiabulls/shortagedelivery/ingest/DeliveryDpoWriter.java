@@ -0,0 +1,22 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import java.sql.SQLException;
+
+/**
+ * Writes DeliveryDPO rows into a table on a connection owned by the caller.
+ * <p>
+ * Rows are flushed as the writer goes; {@link #finish()} pushes whatever is left and returns the
+ * number of rows written. Committing or rolling back stays with the caller.
+ */
+public interface DeliveryDpoWriter extends AutoCloseable {
+
+    String COLUMNS = "(settlement_no, clnt_id, qty_received_t1, security_symbol, isin)";
+
+    void write(DeliveryDpoRow row) throws SQLException;
+
+    long finish() throws SQLException;
+
+    /** Releases the writer; rows not yet finished are discarded. */
+    @Override
+    void close() throws SQLException;
+}
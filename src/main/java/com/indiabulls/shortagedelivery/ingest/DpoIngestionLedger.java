@@ -0,0 +1,99 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Records the DeliveryDPO files loaded into focus.short_delivery (focus.dpo_ingestion_ledger).
+ * <p>
+ * A file listed with the same name, size and modification time as its ledger entry is unchanged
+ * and need not be downloaded. The checksum of the compressed file is kept as well, so a file that
+ * was only touched (new timestamp, same content) is recognised after the download and not merged
+ * again. The settlement numbers of the file are kept in focus.dpo_ingestion_settlement, so their
+ * totals can still be refreshed without the file.
+ */
+@Component
+public class DpoIngestionLedger {
+
+    private static final String FIND_SQL =
+            "SELECT file_size, modified_at, checksum FROM focus.dpo_ingestion_ledger WHERE file_name = ?";
+
+    private static final String RECORD_SQL =
+            "INSERT INTO focus.dpo_ingestion_ledger (file_name, file_size, modified_at, checksum, row_count, loaded_at) " +
+                    "VALUES (?, ?, ?, ?, ?, now()) " +
+                    "ON CONFLICT (file_name) DO UPDATE SET file_size = EXCLUDED.file_size, " +
+                    "modified_at = EXCLUDED.modified_at, checksum = EXCLUDED.checksum, " +
+                    "row_count = EXCLUDED.row_count, loaded_at = EXCLUDED.loaded_at";
+
+    private static final String DELETE_SETTLEMENTS_SQL =
+            "DELETE FROM focus.dpo_ingestion_settlement WHERE file_name = ?";
+
+    private static final String RECORD_SETTLEMENTS_SQL =
+            "INSERT INTO focus.dpo_ingestion_settlement (file_name, settlement_no) " +
+                    "SELECT DISTINCT ?, settlement_no FROM %s WHERE settlement_no IS NOT NULL";
+
+    /**
+     * True if {@code file} is in the ledger with the same size and modification time. Without a
+     * timestamp in the listing the file always counts as changed.
+     */
+    public boolean isUnchanged(Connection conn, FTPFile file) throws SQLException {
+        Timestamp modifiedAt = modifiedAt(file);
+        if (modifiedAt == null) {
+            return false;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(FIND_SQL)) {
+            ps.setString(1, file.getName());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next()
+                        && rs.getLong("file_size") == file.getSize()
+                        && modifiedAt.equals(rs.getTimestamp("modified_at"));
+            }
+        }
+    }
+
+    /** Checksum recorded for {@code fileName}, or null if it was never loaded. */
+    public String checksum(Connection conn, String fileName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(FIND_SQL)) {
+            ps.setString(1, fileName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("checksum") : null;
+            }
+        }
+    }
+
+    /**
+     * Inserts or replaces the entry for {@code file}, with the settlement numbers of the rows staged
+     * in {@code stageTable}; part of the caller's transaction.
+     */
+    public void record(Connection conn, FTPFile file, String checksum, long rowCount, String stageTable)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(RECORD_SQL)) {
+            ps.setString(1, file.getName());
+            ps.setLong(2, file.getSize());
+            ps.setTimestamp(3, modifiedAt(file));
+            ps.setString(4, checksum);
+            ps.setLong(5, rowCount);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_SETTLEMENTS_SQL)) {
+            ps.setString(1, file.getName());
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(String.format(RECORD_SETTLEMENTS_SQL, stageTable))) {
+            ps.setString(1, file.getName());
+            ps.executeUpdate();
+        }
+    }
+
+    private static Timestamp modifiedAt(FTPFile file) {
+        Calendar timestamp = file.getTimestamp();
+        return timestamp == null ? null : new Timestamp(timestamp.getTimeInMillis());
+    }
+}
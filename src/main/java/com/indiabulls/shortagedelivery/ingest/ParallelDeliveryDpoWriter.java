@@ -0,0 +1,188 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits rows into chunks and writes them concurrently over {@code writers} pooled connections,
+ * each with its own {@link DeliveryDpoWriter} (COPY or batch) into the same table.
+ * <p>
+ * Each connection commits on its own, so the table must be a shared (non-temporary) staging table
+ * that the caller merges in its own transaction and drops afterwards; a failed load is undone by
+ * dropping the table. Chunks are recycled between the caller and the writer threads, so the
+ * number of rows in flight is bounded by {@code 2 * writers} chunks.
+ */
+@Slf4j
+class ParallelDeliveryDpoWriter implements DeliveryDpoWriter {
+
+    private static final Chunk END = new Chunk(0);
+
+    private final String table;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> full;
+    private final List<Thread> threads = new ArrayList<>();
+    private final long[] written;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private Chunk current;
+    private boolean finished;
+
+    ParallelDeliveryDpoWriter(DataSource dataSource, String table, DeliveryDpoBulkLoader.Mode mode, int batchSize,
+                              int writers, int chunkRows) {
+        this.table = table;
+        this.free = new ArrayBlockingQueue<>(2 * writers + 1);
+        this.full = new ArrayBlockingQueue<>(2 * writers + writers);
+        this.written = new long[writers];
+        for (int i = 0; i < 2 * writers; i++) {
+            free.add(new Chunk(chunkRows));
+        }
+        this.current = free.poll();
+
+        for (int i = 0; i < writers; i++) {
+            int index = i;
+            Thread t = new Thread(() -> runWriter(dataSource, mode, batchSize, index), "dpo-writer-" + (i + 1));
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    @Override
+    public void write(DeliveryDpoRow row) throws SQLException {
+        current.add(row);
+        if (current.size == current.rows.length) {
+            hand(current);
+            current = take(free);
+        }
+    }
+
+    @Override
+    public long finish() throws SQLException {
+        finished = true;
+        if (current.size > 0) {
+            hand(current);
+        }
+        for (int i = 0; i < threads.size(); i++) {
+            hand(END);
+        }
+        join();
+        throwIfFailed();
+        long total = 0;
+        for (long count : written) {
+            total += count;
+        }
+        log.debug("{} writers loaded {} rows into {}", threads.size(), total, table);
+        return total;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (!finished || failure.get() != null) {
+            failure.compareAndSet(null, new SQLException("Load into " + table + " abandoned"));
+            threads.forEach(Thread::interrupt);
+        }
+        join();
+    }
+
+    private void runWriter(DataSource dataSource, DeliveryDpoBulkLoader.Mode mode, int batchSize, int index) {
+        try (Connection conn = dataSource.getConnection();
+             DeliveryDpoWriter writer = DeliveryDpoBulkLoader.open(conn, table, mode, batchSize)) {
+            while (true) {
+                Chunk chunk = full.take();
+                if (chunk == END) {
+                    break;
+                }
+                for (int i = 0; i < chunk.size; i++) {
+                    writer.write(chunk.rows[i]);
+                }
+                chunk.size = 0;
+                free.put(chunk);
+            }
+            written[index] = writer.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (failure.compareAndSet(null, e)) {
+                // Stop the other writers; the caller sees the failure on its next hand-off
+                threads.forEach(Thread::interrupt);
+            }
+        }
+    }
+
+    /** Queues a chunk for the writers, giving up if one of them failed. */
+    private void hand(Chunk chunk) throws SQLException {
+        try {
+            while (!full.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                throwIfFailed();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading " + table, e);
+        }
+        throwIfFailed();
+    }
+
+    private Chunk take(BlockingQueue<Chunk> queue) throws SQLException {
+        try {
+            Chunk chunk;
+            while ((chunk = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                throwIfFailed();
+            }
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading " + table, e);
+        }
+    }
+
+    private void throwIfFailed() throws SQLException {
+        Exception e = failure.get();
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        }
+        if (e != null) {
+            throw new SQLException("Load into " + table + " failed", e);
+        }
+    }
+
+    private void join() throws SQLException {
+        try {
+            for (Thread t : threads) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading " + table, e);
+        }
+    }
+
+    private static final class Chunk {
+        private final DeliveryDpoRow[] rows;
+        private int size;
+
+        private Chunk(int capacity) {
+            rows = new DeliveryDpoRow[capacity];
+            for (int i = 0; i < capacity; i++) {
+                rows[i] = new DeliveryDpoRow();
+            }
+        }
+
+        /** Copies the row; the caller reuses its row objects. */
+        private void add(DeliveryDpoRow row) {
+            DeliveryDpoRow copy = rows[size++];
+            copy.setSettlementNo(row.getSettlementNo());
+            copy.setClntId(row.getClntId());
+            copy.setQtyReceived(row.getQtyReceived());
+            copy.setSecuritySymbol(row.getSecuritySymbol());
+            copy.setIsin(row.getIsin());
+        }
+    }
+}
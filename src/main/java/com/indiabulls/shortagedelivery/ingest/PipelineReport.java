@@ -0,0 +1,47 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of one {@link DeliveryDpoPipeline#load} run.
+ */
+@Data
+public class PipelineReport {
+
+    @Data
+    public static class StageStats {
+        /** Time spent doing the stage's own work (including I/O it performs). */
+        private long busyMillis;
+        /** Time spent waiting on an empty input queue or a full output queue. */
+        private long waitMillis;
+        /** Chunks or batches handed on to the next stage. */
+        private long items;
+    }
+
+    private long rows;
+    /** The file had no header line at all. */
+    private boolean emptyFile;
+    private long totalMillis;
+    private Map<String, StageStats> stages = new LinkedHashMap<>();
+
+    /** The stage with the most busy time, which bounds the run time. */
+    public String getBottleneck() {
+        return stages.entrySet().stream()
+                .max(Map.Entry.comparingByValue((a, b) -> Long.compare(a.getBusyMillis(), b.getBusyMillis())))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("Loaded ").append(rows).append(" rows in ").append(totalMillis)
+                .append(" ms (bottleneck: ").append(getBottleneck()).append(")");
+        stages.forEach((stage, stats) -> sb.append("; ").append(stage)
+                .append(": busy=").append(stats.getBusyMillis()).append(" ms")
+                .append(", wait=").append(stats.getWaitMillis()).append(" ms")
+                .append(", items=").append(stats.getItems()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loads a DeliveryDPO file through a staging table and upserts it into focus.short_delivery on
+ * its natural key (settlement_no, clnt_id, isin).
+ * <p>
+ * Rows of the same key within a file are summed. Rows that already hold the same values are left
+ * alone, so re-merging an unchanged file writes nothing. The temporary staging table lives until
+ * the end of the caller's transaction; a shared staging table, which parallel writers on other
+ * connections can fill, is an UNLOGGED table of its own per load that the caller drops. Its name
+ * carries its creation time, so tables left behind by a crashed load can be told from those of a
+ * load still running and dropped by {@link #dropStaleSharedStages}.
+ */
+@Component
+public class ShortDeliveryMerger {
+
+    public static final String STAGE_TABLE = "short_delivery_stage";
+
+    private static final String SHARED_STAGE_PREFIX = "short_delivery_load_";
+
+    // <creation time in epoch millis>_<random>; older tables were named with a bare UUID
+    private static final Pattern SHARED_STAGE_SUFFIX = Pattern.compile("(\\d+)_[0-9a-f]+");
+
+    private static final String FIND_SHARED_STAGES_SQL =
+            "SELECT tablename FROM pg_tables WHERE schemaname = 'focus' AND tablename LIKE ?";
+
+    private static final String CREATE_STAGE_SQL =
+            "CREATE TEMP TABLE " + STAGE_TABLE + " (" +
+                    "settlement_no text, clnt_id text, qty_received_t1 integer, security_symbol text, isin text" +
+                    ") ON COMMIT DROP";
+
+    private static final String CREATE_SHARED_STAGE_SQL =
+            "CREATE UNLOGGED TABLE %s (" +
+                    "settlement_no text, clnt_id text, qty_received_t1 integer, security_symbol text, isin text)";
+
+    private static final String MERGE_SQL =
+            "INSERT INTO focus.short_delivery " + DeliveryDpoWriter.COLUMNS + " " +
+                    "SELECT settlement_no, clnt_id, SUM(qty_received_t1), MAX(security_symbol), isin " +
+                    "FROM %s " +
+                    "GROUP BY settlement_no, clnt_id, isin " +
+                    "ON CONFLICT (settlement_no, clnt_id, isin) DO UPDATE " +
+                    "SET qty_received_t1 = EXCLUDED.qty_received_t1, security_symbol = EXCLUDED.security_symbol " +
+                    "WHERE (short_delivery.qty_received_t1, short_delivery.security_symbol) " +
+                    "IS DISTINCT FROM (EXCLUDED.qty_received_t1, EXCLUDED.security_symbol)";
+
+    /** Creates the staging table; the connection must not be in auto-commit mode. */
+    public void createStage(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(CREATE_STAGE_SQL);
+        }
+    }
+
+    /**
+     * Creates a staging table for this load that other connections can write to. Run it on an
+     * auto-commit connection so the table is visible to them.
+     *
+     * @return the table name, for {@link #merge(Connection, String)} and {@link #dropSharedStage}
+     */
+    public String createSharedStage(Connection conn) throws SQLException {
+        String table = "focus." + SHARED_STAGE_PREFIX + System.currentTimeMillis() + "_"
+                + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        try (Statement st = conn.createStatement()) {
+            st.execute(String.format(CREATE_SHARED_STAGE_SQL, table));
+        }
+        return table;
+    }
+
+    public void dropSharedStage(Connection conn, String table) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + table);
+        }
+    }
+
+    /**
+     * Drops the shared staging tables created more than {@code maxAge} ago, which no running load
+     * still uses, and those named before their names carried a creation time.
+     *
+     * @return the names of the tables dropped
+     */
+    public List<String> dropStaleSharedStages(Connection conn, Duration maxAge) throws SQLException {
+        long cutoff = System.currentTimeMillis() - maxAge.toMillis();
+        List<String> stale = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(FIND_SHARED_STAGES_SQL)) {
+            ps.setString(1, SHARED_STAGE_PREFIX.replace("_", "\\_") + "%");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString(1);
+                    Matcher suffix = SHARED_STAGE_SUFFIX.matcher(table.substring(SHARED_STAGE_PREFIX.length()));
+                    if (!suffix.matches() || Long.parseLong(suffix.group(1)) < cutoff) {
+                        stale.add("focus." + table);
+                    }
+                }
+            }
+        }
+        for (String table : stale) {
+            dropSharedStage(conn, table);
+        }
+        return stale;
+    }
+
+    /**
+     * Upserts the staged rows.
+     *
+     * @return rows of focus.short_delivery inserted or changed
+     */
+    public int merge(Connection conn) throws SQLException {
+        return merge(conn, STAGE_TABLE);
+    }
+
+    /** Upserts the rows staged in {@code stageTable}. */
+    public int merge(Connection conn, String stageTable) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(String.format(MERGE_SQL, stageTable))) {
+            return ps.executeUpdate();
+        }
+    }
+}
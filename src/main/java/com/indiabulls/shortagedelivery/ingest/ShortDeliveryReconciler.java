@@ -0,0 +1,59 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reconciles focus.short_delivery against the symbols of the SHRT file in one statement.
+ * <p>
+ * The distinct symbols go to the server as a single {@code text[]} parameter; every matching row
+ * whose {@code total_quantity} and {@code qty_received_t1} differ gets
+ * {@code short_quantity = total_quantity - qty_received_t1}, and the updated rows come back
+ * through {@code RETURNING}. Missing quantities count as 0, as they did when read with getInt.
+ */
+@Component
+public class ShortDeliveryReconciler {
+
+    private static final String RECONCILE_SQL =
+            "UPDATE focus.short_delivery sd " +
+                    "SET short_quantity = COALESCE(sd.total_quantity, 0) - COALESCE(sd.qty_received_t1, 0) " +
+                    "WHERE sd.security_symbol = ANY (?) " +
+                    "AND COALESCE(sd.total_quantity, 0) <> COALESCE(sd.qty_received_t1, 0) " +
+                    "RETURNING sd.clnt_id, sd.security_symbol, " +
+                    "COALESCE(sd.total_quantity, 0) AS total_quantity, " +
+                    "COALESCE(sd.qty_received_t1, 0) AS qty_received_t1, " +
+                    "sd.short_quantity";
+
+    public List<ShortageMismatch> reconcile(Connection conn, Collection<String> symbols) throws SQLException {
+        List<ShortageMismatch> mismatches = new ArrayList<>();
+        if (symbols.isEmpty()) {
+            return mismatches;
+        }
+
+        Array symbolArray = conn.createArrayOf("text", symbols.toArray());
+        try (PreparedStatement ps = conn.prepareStatement(RECONCILE_SQL)) {
+            ps.setArray(1, symbolArray);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    mismatches.add(new ShortageMismatch(
+                            rs.getString("clnt_id"),
+                            rs.getString("security_symbol"),
+                            rs.getInt("total_quantity"),
+                            rs.getInt("qty_received_t1"),
+                            rs.getInt("short_quantity")));
+                }
+            }
+        } finally {
+            symbolArray.free();
+        }
+        return mismatches;
+    }
+}
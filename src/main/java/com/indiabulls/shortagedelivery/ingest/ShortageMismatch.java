@@ -0,0 +1,28 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A short_delivery row whose received quantity differs from the traded quantity, as updated by
+ * {@link ShortDeliveryReconciler}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShortageMismatch {
+    private String clntId;
+    private String securitySymbol;
+    private int totalQuantity;
+    private int qtyReceived;
+    private int shortQuantity;
+
+    public String describe() {
+        return "Client=" + clntId +
+                ", Symbol=" + securitySymbol +
+                ", total_quantity=" + totalQuantity +
+                ", qty_received_t1=" + qtyReceived +
+                ", short_quantity set to=" + shortQuantity;
+    }
+}
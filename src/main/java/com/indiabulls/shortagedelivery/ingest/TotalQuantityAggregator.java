@@ -0,0 +1,103 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Maintains focus.trxn_qty_summary and copies its totals into short_delivery.total_quantity.
+ * <p>
+ * Only the settlement numbers of the DPO file being loaded are touched: their summary rows are
+ * recomputed from trxn_table_class (through its settlement_no index) and then joined to
+ * short_delivery on the summary's primary key, so the cost follows the size of today's file
+ * rather than the whole transaction history. A file that is not loaded again (see
+ * {@link DpoIngestionLedger}) still has its settlements refreshed from the ledger, since trades
+ * keep arriving in trxn_table_class after the file was first loaded.
+ */
+@Component
+public class TotalQuantityAggregator {
+
+    private static final String SETTLEMENTS_TABLE = "dpo_settlements";
+
+    private static final String COLLECT_SETTLEMENTS_SQL =
+            "CREATE TEMP TABLE " + SETTLEMENTS_TABLE + " ON COMMIT DROP AS " +
+                    "SELECT DISTINCT settlement_no FROM %s " +
+                    "WHERE settlement_no IS NOT NULL";
+
+    private static final String CREATE_SETTLEMENTS_SQL =
+            "CREATE TEMP TABLE " + SETTLEMENTS_TABLE + " (settlement_no text) ON COMMIT DROP";
+
+    private static final String COLLECT_LEDGER_SETTLEMENTS_SQL =
+            "INSERT INTO " + SETTLEMENTS_TABLE + " " +
+                    "SELECT settlement_no FROM focus.dpo_ingestion_settlement WHERE file_name = ?";
+
+    private static final String DELETE_SUMMARY_SQL =
+            "DELETE FROM focus.trxn_qty_summary " +
+                    "WHERE settlement_no IN (SELECT settlement_no FROM " + SETTLEMENTS_TABLE + ")";
+
+    private static final String REFRESH_SUMMARY_SQL =
+            "INSERT INTO focus.trxn_qty_summary (settlement_no, isin, clnt_id, total_trn_qty) " +
+                    "SELECT t.settlement_no, UPPER(t.isin), TRIM(LEADING 'C' FROM t.party_cd), SUM(t.trn_qty) " +
+                    "FROM focus.trxn_table_class t " +
+                    "WHERE t.settlement_no IN (SELECT settlement_no FROM " + SETTLEMENTS_TABLE + ") " +
+                    "AND t.isin IS NOT NULL AND t.party_cd IS NOT NULL " +
+                    "GROUP BY t.settlement_no, UPPER(t.isin), TRIM(LEADING 'C' FROM t.party_cd) " +
+                    "HAVING SUM(t.trn_qty) IS NOT NULL";
+
+    private static final String UPDATE_TOTALS_SQL =
+            "UPDATE focus.short_delivery sd " +
+                    "SET total_quantity = s.total_trn_qty " +
+                    "FROM focus.trxn_qty_summary s " +
+                    "WHERE sd.settlement_no IN (SELECT settlement_no FROM " + SETTLEMENTS_TABLE + ") " +
+                    "AND s.settlement_no = sd.settlement_no " +
+                    "AND s.isin = UPPER(sd.isin) " +
+                    "AND s.clnt_id = sd.clnt_id " +
+                    "AND sd.total_quantity IS DISTINCT FROM s.total_trn_qty";
+
+    /**
+     * Refreshes the summary for the settlements in the staging table and updates the matching
+     * short_delivery rows. Must run in the transaction that loaded the staging table.
+     *
+     * @return short_delivery rows whose total_quantity changed
+     */
+    public int refreshStagedSettlements(Connection conn) throws SQLException {
+        return refreshStagedSettlements(conn, ShortDeliveryMerger.STAGE_TABLE);
+    }
+
+    /** Like {@link #refreshStagedSettlements(Connection)} for rows staged in {@code stageTable}. */
+    public int refreshStagedSettlements(Connection conn, String stageTable) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(String.format(COLLECT_SETTLEMENTS_SQL, stageTable));
+            return refresh(st);
+        }
+    }
+
+    /**
+     * Like {@link #refreshStagedSettlements(Connection)} for the settlements the ledger recorded for
+     * {@code fileName}. Must run in a transaction.
+     */
+    public int refreshLedgerSettlements(Connection conn, String fileName) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(CREATE_SETTLEMENTS_SQL);
+            try (PreparedStatement ps = conn.prepareStatement(COLLECT_LEDGER_SETTLEMENTS_SQL)) {
+                ps.setString(1, fileName);
+                ps.executeUpdate();
+            }
+            return refresh(st);
+        }
+    }
+
+    private int refresh(Statement st) throws SQLException {
+        // The three-column join below is estimated at a row or two, and a nested loop over an
+        // unindexed settlements table would scan all of it once per short_delivery row
+        st.execute("ALTER TABLE " + SETTLEMENTS_TABLE + " ADD PRIMARY KEY (settlement_no)");
+        // Temp tables are never auto-analyzed; give the planner real row counts
+        st.execute("ANALYZE " + SETTLEMENTS_TABLE);
+        st.executeUpdate(DELETE_SUMMARY_SQL);
+        st.executeUpdate(REFRESH_SUMMARY_SQL);
+        return st.executeUpdate(UPDATE_TOTALS_SQL);
+    }
+}
@@ -16,7 +16,9 @@ public class EmailNotificationController {
     @PostMapping("/email")
     public String sendEmailNotification(
             @RequestBody NotificationMessageRequest<ShortageEmailTemplateData> request) {
-        shortageNotificationService.sendEmailNotification(request);
+        if (!shortageNotificationService.sendEmailNotification(request)) {
+            return "Error: email notification could not be published";
+        }
         return "Email notification sent";
     }
 
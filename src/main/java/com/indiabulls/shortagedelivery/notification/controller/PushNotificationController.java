@@ -3,6 +3,7 @@ package com.indiabulls.shortagedelivery.notification.controller;
 import com.indiabulls.shortagedelivery.notification.service.PushNotificationService;
 import com.indiabulls.shortagedelivery.notification.dto.PushNotificationRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,7 +16,10 @@ public class PushNotificationController {
 
     @PostMapping("/push")
     public ResponseEntity<String> sendPush(@RequestBody PushNotificationRequest request) {
-        pushNotificationService.sendPush(request);
+        if (!pushNotificationService.sendPush(request)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Error: push notification could not be published");
+        }
         return ResponseEntity.ok("Push notification sent successfully!");
     }
 }
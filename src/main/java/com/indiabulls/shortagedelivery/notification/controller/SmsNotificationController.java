@@ -3,6 +3,7 @@ package com.indiabulls.shortagedelivery.notification.controller;
 import com.indiabulls.shortagedelivery.notification.service.SmsNotificationService;
 import com.indiabulls.shortagedelivery.notification.dto.SmsNotificationRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,7 +16,10 @@ public class SmsNotificationController {
 
     @PostMapping("/sms")
     public ResponseEntity<String> sendSms(@RequestBody SmsNotificationRequest request) {
-        smsNotificationService.sendSms(request);
+        if (!smsNotificationService.sendSms(request)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Error: SMS notification could not be published");
+        }
         return ResponseEntity.ok("SMS notification sent successfully!");
     }
 }
@@ -10,5 +10,6 @@ public class PushNotificationRequest {
     private List<String> receivers;       // e.g. clientIds
     private String templateName;          // template identifier
     private Map<String, Object> templateDataJson; // template data
+    private Map<String, Map<String, Object>> receiverTemplateDataJson; // per-receiver overrides of templateDataJson
     private String eventType;             // custom event type
 }
@@ -9,4 +9,5 @@ public class SmsNotificationRequest {
     private List<String> receivers;          // list of phone numbers
     private String templateName;             // SMS template identifier
     private Map<String, Object> templateDataJson; // SMS template data (placeholders)
+    private Map<String, Map<String, Object>> receiverTemplateDataJson; // per-receiver overrides of templateDataJson
 }
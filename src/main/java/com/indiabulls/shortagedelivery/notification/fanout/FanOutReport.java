@@ -0,0 +1,42 @@
+package com.indiabulls.shortagedelivery.notification.fanout;
+
+import lombok.Data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Outcome of one {@link NotificationFanOutEngine#dispatch} call.
+ */
+@Data
+public class FanOutReport {
+
+    @Data
+    public static class ChannelStats {
+        private long sent;
+        private long failed;
+        /** Messages per second over the whole dispatch. */
+        private double throughput;
+    }
+
+    private long totalMillis;
+    private Map<NotificationChannel, ChannelStats> channels = new EnumMap<>(NotificationChannel.class);
+
+    public long getSent() {
+        return channels.values().stream().mapToLong(ChannelStats::getSent).sum();
+    }
+
+    public long getFailed() {
+        return channels.values().stream().mapToLong(ChannelStats::getFailed).sum();
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("Dispatched ").append(getSent()).append(" notifications (")
+                .append(getFailed()).append(" failed) in ").append(totalMillis).append(" ms");
+        channels.forEach((channel, stats) -> sb.append("; ").append(channel)
+                .append(": sent=").append(stats.getSent())
+                .append(", failed=").append(stats.getFailed())
+                .append(", ").append(String.format("%.1f", stats.getThroughput())).append("/s"));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,7 @@
+package com.indiabulls.shortagedelivery.notification.fanout;
+
+public enum NotificationChannel {
+    EMAIL,
+    PUSH,
+    SMS
+}
@@ -0,0 +1,138 @@
+package com.indiabulls.shortagedelivery.notification.fanout;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatches notification tasks in parallel on a bounded worker pool.
+ * <p>
+ * Tasks are partitioned by client id across {@code shortage.fanout.workers} workers, so each
+ * client's messages are sent in order while different clients and channels go out concurrently.
+ * Every channel has its own rate limit ({@code shortage.fanout.rate.<channel>} messages per
+ * second, 0 for none) shared by all workers.
+ */
+@Slf4j
+@Component
+public class NotificationFanOutEngine {
+
+    private final int workers;
+    private final ExecutorService executor;
+    private final Map<NotificationChannel, RateLimiter> rateLimiters = new EnumMap<>(NotificationChannel.class);
+
+    public NotificationFanOutEngine(@Value("${shortage.fanout.workers:8}") int workers,
+                                    @Value("${shortage.fanout.rate.email:0}") double emailRate,
+                                    @Value("${shortage.fanout.rate.push:0}") double pushRate,
+                                    @Value("${shortage.fanout.rate.sms:0}") double smsRate) {
+        this.workers = workers;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "notify-fanout-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        rateLimiters.put(NotificationChannel.EMAIL, new RateLimiter(emailRate));
+        rateLimiters.put(NotificationChannel.PUSH, new RateLimiter(pushRate));
+        rateLimiters.put(NotificationChannel.SMS, new RateLimiter(smsRate));
+    }
+
+    /**
+     * Sends all tasks and waits for them to finish. A task that throws counts as failed.
+     */
+    public FanOutReport dispatch(List<NotificationTask> tasks) {
+        long start = System.nanoTime();
+
+        List<List<NotificationTask>> partitions = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (NotificationTask task : tasks) {
+            int partition = Math.floorMod(task.getClntId() == null ? 0 : task.getClntId().hashCode(), workers);
+            partitions.get(partition).add(task);
+        }
+
+        Map<NotificationChannel, LongAdder> sent = counters();
+        Map<NotificationChannel, LongAdder> failed = counters();
+
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (List<NotificationTask> partition : partitions) {
+            if (!partition.isEmpty()) {
+                futures.add(executor.submit(() -> send(partition, sent, failed)));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                break;
+            } catch (ExecutionException e) {
+                log.error("Notification worker failed", e.getCause());
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        FanOutReport report = new FanOutReport();
+        report.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            long channelSent = sent.get(channel).sum();
+            long channelFailed = failed.get(channel).sum();
+            if (channelSent + channelFailed == 0) {
+                continue;
+            }
+            FanOutReport.ChannelStats stats = new FanOutReport.ChannelStats();
+            stats.setSent(channelSent);
+            stats.setFailed(channelFailed);
+            stats.setThroughput(channelSent / seconds);
+            report.getChannels().put(channel, stats);
+        }
+        log.info(report.summary());
+        return report;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void send(List<NotificationTask> partition, Map<NotificationChannel, LongAdder> sent,
+                      Map<NotificationChannel, LongAdder> failed) {
+        for (NotificationTask task : partition) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            rateLimiters.get(task.getChannel()).acquire();
+            boolean ok;
+            try {
+                ok = task.getSend().getAsBoolean();
+            } catch (RuntimeException e) {
+                log.error("Failed to send {} notification to client {}", task.getChannel(), task.getClntId(), e);
+                ok = false;
+            }
+            (ok ? sent : failed).get(task.getChannel()).increment();
+        }
+    }
+
+    private static Map<NotificationChannel, LongAdder> counters() {
+        Map<NotificationChannel, LongAdder> counters = new EnumMap<>(NotificationChannel.class);
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            counters.put(channel, new LongAdder());
+        }
+        return counters;
+    }
+}
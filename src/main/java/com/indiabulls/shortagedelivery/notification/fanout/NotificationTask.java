@@ -0,0 +1,18 @@
+package com.indiabulls.shortagedelivery.notification.fanout;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * One message to dispatch: the channel it goes out on, the client it is for (used to partition
+ * work so a client's messages stay in order) and the send call itself.
+ */
+@Getter
+@AllArgsConstructor
+public class NotificationTask {
+    private final NotificationChannel channel;
+    private final String clntId;
+    private final BooleanSupplier send;
+}
@@ -0,0 +1,37 @@
+package com.indiabulls.shortagedelivery.notification.fanout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces permits evenly at {@code permitsPerSecond} across all calling threads.
+ * A rate of 0 or less means unlimited.
+ */
+class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    RateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+    }
+
+    void acquire() {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long waitNanos = reserve();
+        while (waitNanos > 0) {
+            long start = System.nanoTime();
+            LockSupport.parkNanos(waitNanos);
+            waitNanos -= System.nanoTime() - start;
+        }
+    }
+
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        long grantedAt = Math.max(now, nextFreeNanos);
+        nextFreeNanos = grantedAt + intervalNanos;
+        return grantedAt - now;
+    }
+}
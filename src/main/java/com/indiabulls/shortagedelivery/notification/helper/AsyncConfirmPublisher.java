@@ -0,0 +1,374 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes messages from an internal queue on a dedicated channel in confirm mode.
+ * <p>
+ * Callers hand messages to {@link #submit} and return immediately with a future of the outcome,
+ * completed once the message is confirmed or given up on. A single publisher thread
+ * drains the queue in batches and publishes them without waiting for the broker; confirms arrive
+ * asynchronously and are matched to the pending messages by delivery tag. Nacked messages are
+ * published again, ahead of new ones, up to {@code maxRetries} times. When the channel shuts down,
+ * e.g. because the connection dropped and is being recovered, the confirms of the messages in
+ * flight will never come and delivery tags start over, so those messages are published again the
+ * same way. Messages that could not be published because the channel was down do not use up
+ * their retries; the publisher thread backs off, up to {@code MAX_BACKOFF_MS} between attempts,
+ * until the channel is open again.
+ * <p>
+ * Back-pressure: at most {@code maxOutstanding} messages may be unconfirmed, after which the
+ * publisher thread waits for confirms; once the queue is full, {@link #submit} blocks the caller.
+ * <p>
+ * Outcome futures are completed on the client's connection thread or the publisher thread, so
+ * whatever is chained to them must not block.
+ */
+@Slf4j
+public class AsyncConfirmPublisher implements AutoCloseable {
+
+    private static final PendingMessage POISON = new PendingMessage(null, null, null);
+    private static final long CLOSE_TIMEOUT_MS = 30_000;
+    private static final long POLL_MS = 10;
+    private static final long MIN_BACKOFF_MS = 10;
+    private static final long MAX_BACKOFF_MS = 5_000;
+
+    private final Channel channel;
+    private final String exchange;
+    private final int batchSize;
+    private final int maxRetries;
+
+    private final BlockingQueue<PendingMessage> queue;
+    // Nacked messages, published ahead of the queue; never larger than maxOutstanding
+    private final Queue<PendingMessage> retries = new ConcurrentLinkedQueue<>();
+    private final ConcurrentNavigableMap<Long, PendingMessage> outstanding = new ConcurrentSkipListMap<>();
+    private final Semaphore outstandingPermits;
+    private final Thread publisherThread;
+    private volatile boolean running = true;
+    // Set when a publish failed or the channel shut down; the publisher thread backs off first
+    private volatile boolean channelFailed;
+    private long backoffMs = MIN_BACKOFF_MS; // publisher thread only
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong nacked = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    // Submitted but neither confirmed nor given up on yet
+    private final AtomicLong unsettled = new AtomicLong();
+
+    /**
+     * @param channel a channel used only by this publisher; it is switched to confirm mode
+     */
+    public AsyncConfirmPublisher(Channel channel, String exchange, int queueCapacity, int batchSize,
+                                 int maxOutstanding, int maxRetries) throws IOException {
+        this.channel = channel;
+        this.exchange = exchange;
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.outstandingPermits = new Semaphore(maxOutstanding);
+
+        channel.confirmSelect();
+        channel.addConfirmListener(new ConfirmListener() {
+            @Override
+            public void handleAck(long deliveryTag, boolean multiple) {
+                for (PendingMessage message : complete(deliveryTag, multiple)) {
+                    confirmed.incrementAndGet();
+                    unsettled.decrementAndGet();
+                    message.outcome.complete(true);
+                }
+            }
+
+            @Override
+            public void handleNack(long deliveryTag, boolean multiple) {
+                for (PendingMessage message : complete(deliveryTag, multiple)) {
+                    nacked.incrementAndGet();
+                    retry(message);
+                }
+            }
+        });
+        // Also called for a recovering channel, before it is reopened
+        channel.addShutdownListener(cause -> failOutstanding());
+
+        this.publisherThread = new Thread(this::publishLoop, "rabbitmq-confirm-publisher");
+        this.publisherThread.setDaemon(true);
+        this.publisherThread.start();
+    }
+
+    /**
+     * Queues a message for publishing, blocking while the queue is full.
+     *
+     * @return completed with true once the broker confirms the message, or with false if it was
+     * given up on; already false if the publisher has been closed or the caller was interrupted
+     */
+    public CompletableFuture<Boolean> submit(String routingKey, AMQP.BasicProperties props, byte[] body) {
+        if (!running) {
+            return CompletableFuture.completedFuture(false);
+        }
+        unsettled.incrementAndGet();
+        PendingMessage message = new PendingMessage(routingKey, props, body);
+        try {
+            queue.put(message);
+            return message.outcome;
+        } catch (InterruptedException e) {
+            unsettled.decrementAndGet();
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * Waits until everything submitted so far has been confirmed or given up on.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (unsettled.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getConfirmed() {
+        return confirmed.get();
+    }
+
+    public long getNacked() {
+        return nacked.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    public int getOutstanding() {
+        return outstanding.size();
+    }
+
+    /**
+     * Stops accepting messages, publishes what is already queued and stops the publisher thread.
+     * Confirms still in flight are not waited for, call {@link #flush} first for that; the
+     * messages still unconfirmed are given up on.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        if (!queue.offer(POISON, CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            publisherThread.interrupt();
+        }
+        publisherThread.join(CLOSE_TIMEOUT_MS);
+        if (publisherThread.isAlive()) {
+            // Stuck waiting for confirms that will not come (e.g. the channel is gone)
+            publisherThread.interrupt();
+            log.warn("Confirm publisher stopped with {} messages still queued", queue.size());
+        }
+        if (!outstanding.isEmpty()) {
+            log.warn("Closing confirm publisher with {} unconfirmed messages", outstanding.size());
+        }
+        // Not running any more, so all of these are given up on
+        failOutstanding();
+        PendingMessage message;
+        while ((message = retries.poll()) != null) {
+            retry(message);
+        }
+        while ((message = queue.poll()) != null) {
+            if (message != POISON) {
+                retry(message);
+            }
+        }
+    }
+
+    private void publishLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                if (channelFailed && running) {
+                    backOff();
+                }
+                PendingMessage retry;
+                while ((retry = retries.poll()) != null) {
+                    if (!publish(retry)) {
+                        break;
+                    }
+                }
+                if (channelFailed && running) {
+                    continue;
+                }
+                PendingMessage first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                boolean published = true;
+                for (PendingMessage message : batch) {
+                    if (message == POISON) {
+                        return;
+                    }
+                    if (published) {
+                        published = publish(message);
+                    } else {
+                        // The channel is down; keep the rest of the batch until it is back
+                        requeue(message);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Waits a little longer each time, and at least until the channel is open again. */
+    private void backOff() throws InterruptedException {
+        channelFailed = false;
+        do {
+            Thread.sleep(backoffMs);
+            backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+        } while (running && !channel.isOpen());
+    }
+
+    /** @return false if the message could not be handed to the channel */
+    private boolean publish(PendingMessage message) throws InterruptedException {
+        outstandingPermits.acquire();
+        long deliveryTag;
+        PendingMessage stale;
+        synchronized (outstanding) {
+            deliveryTag = channel.getNextPublishSeqNo();
+            stale = outstanding.put(deliveryTag, message);
+        }
+        if (stale != null) {
+            // Tags restarted on a recovered channel before the old message was failed
+            outstandingPermits.release();
+            retry(stale);
+        }
+        try {
+            channel.basicPublish(exchange, message.routingKey, message.props, message.body);
+            published.incrementAndGet();
+            backoffMs = MIN_BACKOFF_MS;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            if (outstanding.remove(deliveryTag) != null) {
+                outstandingPermits.release();
+            }
+            channelFailed = true;
+            if (channel.isOpen()) {
+                // Something about this message rather than the channel
+                log.warn("Publish to route={} failed: {}", message.routingKey, e.getMessage());
+                retry(message);
+            } else {
+                log.debug("Channel closed, publish to route={} deferred", message.routingKey);
+                requeue(message);
+            }
+            return false;
+        }
+    }
+
+    private List<PendingMessage> complete(long deliveryTag, boolean multiple) {
+        List<PendingMessage> completed = new ArrayList<>();
+        if (multiple) {
+            Map<Long, PendingMessage> acked = outstanding.headMap(deliveryTag, true);
+            for (Long tag : new ArrayList<>(acked.keySet())) {
+                PendingMessage message = outstanding.remove(tag);
+                if (message != null) {
+                    completed.add(message);
+                }
+            }
+        } else {
+            PendingMessage message = outstanding.remove(deliveryTag);
+            if (message != null) {
+                completed.add(message);
+            }
+        }
+        outstandingPermits.release(completed.size());
+        return completed;
+    }
+
+    /** Publishes every unconfirmed message again and frees its slot; their confirms will not come. */
+    private void failOutstanding() {
+        channelFailed = true;
+        List<PendingMessage> lost = new ArrayList<>();
+        // Nothing is published on the new channel until the old messages are out of the map
+        synchronized (outstanding) {
+            Map.Entry<Long, PendingMessage> entry;
+            while ((entry = outstanding.pollFirstEntry()) != null) {
+                lost.add(entry.getValue());
+            }
+        }
+        outstandingPermits.release(lost.size());
+        lost.forEach(this::requeue);
+        if (!lost.isEmpty() && running) {
+            log.warn("Channel shut down with {} unconfirmed messages, publishing them again", lost.size());
+        }
+    }
+
+    private void retry(PendingMessage message) {
+        if (message.attempts >= maxRetries || !running) {
+            failed.incrementAndGet();
+            unsettled.decrementAndGet();
+            log.error("Giving up on message to route={} after {} attempts", message.routingKey, message.attempts + 1);
+            message.outcome.complete(false);
+            return;
+        }
+        message.attempts++;
+        retries.add(message);
+        retried.incrementAndGet();
+    }
+
+    /** Publishes the message again without counting an attempt; the channel, not the message, failed. */
+    private void requeue(PendingMessage message) {
+        if (!running) {
+            retry(message);
+            return;
+        }
+        retries.add(message);
+        retried.incrementAndGet();
+    }
+
+    private static final class PendingMessage {
+        private final String routingKey;
+        private final AMQP.BasicProperties props;
+        private final byte[] body;
+        private final CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        private int attempts;
+
+        private PendingMessage(String routingKey, AMQP.BasicProperties props, byte[] body) {
+            this.routingKey = routingKey;
+            this.props = props;
+            this.body = body;
+        }
+    }
+}
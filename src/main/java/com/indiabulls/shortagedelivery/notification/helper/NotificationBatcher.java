@@ -0,0 +1,130 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Coalesces single-receiver requests into multi-receiver ones ahead of the transport.
+ * <p>
+ * Requests are merged when they share template, sender, subject and data fields, up to
+ * {@code shortage.batching.max-receivers} receivers per message. By default the template data must
+ * be equal too; with {@code shortage.batching.per-receiver-data=true} requests with different data
+ * are merged as well, and receivers whose data differs from the first one in the batch get it in
+ * {@link NotificationMessageRequest#getReceiverTemplateData()}. Only enable that once the
+ * notification consumers read the per-receiver data.
+ */
+@Component
+public class NotificationBatcher {
+
+    private final int maxReceivers;
+    private final boolean perReceiverData;
+
+    public NotificationBatcher(@Value("${shortage.batching.max-receivers:100}") int maxReceivers,
+                               @Value("${shortage.batching.per-receiver-data:false}") boolean perReceiverData) {
+        this.maxReceivers = Math.max(1, maxReceivers);
+        this.perReceiverData = perReceiverData;
+    }
+
+    /** A coalesced request and the positions of the input requests merged into it. */
+    @Getter
+    @AllArgsConstructor
+    public static class Batch<T> {
+        private final NotificationMessageRequest<T> request;
+        private final List<Integer> sources;
+    }
+
+    /**
+     * Returns the coalesced requests, in order of the first request of each group. The input
+     * requests are not modified.
+     */
+    public <T> List<NotificationMessageRequest<T>> coalesce(List<NotificationMessageRequest<T>> requests) {
+        List<NotificationMessageRequest<T>> merged = new ArrayList<>();
+        for (Batch<T> batch : batch(requests)) {
+            merged.add(batch.getRequest());
+        }
+        return merged;
+    }
+
+    /**
+     * Like {@link #coalesce} but also tells which input requests went into each message, e.g. to
+     * record delivery per input once the message is sent.
+     */
+    public <T> List<Batch<T>> batch(List<NotificationMessageRequest<T>> requests) {
+        Map<List<Object>, List<Integer>> open = new LinkedHashMap<>();
+        Map<List<Object>, Integer> openReceivers = new HashMap<>();
+        List<Batch<T>> batches = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            NotificationMessageRequest<T> request = requests.get(i);
+            List<Object> key = Arrays.asList(request.getTemplateName(), request.getSender(), request.getSubject(),
+                    request.getDataFields(), perReceiverData ? null : request.getTemplateDataJson());
+            open.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            if (openReceivers.merge(key, request.getReceivers().size(), Integer::sum) >= maxReceivers) {
+                batches.addAll(merge(requests, open.remove(key)));
+                openReceivers.remove(key);
+            }
+        }
+        for (List<Integer> group : open.values()) {
+            batches.addAll(merge(requests, group));
+        }
+        return batches;
+    }
+
+    private <T> List<Batch<T>> merge(List<NotificationMessageRequest<T>> requests, List<Integer> group) {
+        List<Batch<T>> merged = new ArrayList<>();
+        Batch<T> batch = null;
+        Set<String> batchReceivers = new HashSet<>();
+        for (int source : group) {
+            NotificationMessageRequest<T> request = requests.get(source);
+            for (String receiver : request.getReceivers()) {
+                // A receiver appears at most once per message, so its data stays unambiguous
+                if (batch == null || batch.request.getReceivers().size() >= maxReceivers || !batchReceivers.add(receiver)) {
+                    batchReceivers.clear();
+                    batchReceivers.add(receiver);
+                    batch = new Batch<>(NotificationMessageRequest.<T>builder()
+                            .receivers(new ArrayList<>())
+                            .sender(request.getSender())
+                            .subject(request.getSubject())
+                            .templateName(request.getTemplateName())
+                            .templateDataJson(request.getTemplateDataJson())
+                            .dataFields(request.getDataFields())
+                            .build(), new ArrayList<>());
+                    merged.add(batch);
+                }
+                NotificationMessageRequest<T> message = batch.request;
+                message.getReceivers().add(receiver);
+                if (batch.sources.isEmpty() || batch.sources.get(batch.sources.size() - 1) != source) {
+                    batch.sources.add(source);
+                }
+                T data = dataFor(request, receiver);
+                if (!Objects.equals(data, message.getTemplateDataJson())) {
+                    if (message.getReceiverTemplateData() == null) {
+                        message.setReceiverTemplateData(new LinkedHashMap<>());
+                    }
+                    message.getReceiverTemplateData().put(receiver, data);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static <T> T dataFor(NotificationMessageRequest<T> request, String receiver) {
+        Map<String, T> receiverData = request.getReceiverTemplateData();
+        if (receiverData != null && receiverData.containsKey(receiver)) {
+            return receiverData.get(receiver);
+        }
+        return request.getTemplateDataJson();
+    }
+}
@@ -0,0 +1,97 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes {@link NotificationMessageRequest}s into the JSON bodies published to the broker, the
+ * same bytes {@link ObjectMapper#writeValueAsBytes} produces.
+ * <p>
+ * The {@link ObjectWriter} is resolved once per template data class, and each thread writes into
+ * its own buffer, kept between messages, so the body is the one array allocated per message on
+ * top of what Jackson needs for the generator.
+ */
+@Component
+public class NotificationMessageEncoder {
+
+    // A thread that once encoded a huge message does not keep that much memory around
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter untypedWriter;
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    public NotificationMessageEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.untypedWriter = objectMapper.writerFor(NotificationMessageRequest.class);
+    }
+
+    public byte[] encode(NotificationMessageRequest<?> request) throws IOException {
+        Buffer buffer = buffers.get();
+        try {
+            writerFor(request).writeValue(buffer, request);
+            return buffer.toByteArray();
+        } finally {
+            if (!buffer.reset()) {
+                buffers.remove();
+            }
+        }
+    }
+
+    private ObjectWriter writerFor(NotificationMessageRequest<?> request) {
+        Object data = request.getTemplateDataJson();
+        if (data == null) {
+            return untypedWriter;
+        }
+        return writers.computeIfAbsent(data.getClass(), type -> {
+            JavaType requestType = objectMapper.getTypeFactory()
+                    .constructParametricType(NotificationMessageRequest.class, type);
+            return objectMapper.writerFor(requestType);
+        });
+    }
+
+    /** A growable byte sink whose array outlives the message; closing it does nothing. */
+    private static final class Buffer extends OutputStream {
+
+        private byte[] bytes = new byte[1024];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+
+        /** @return false if the buffer grew too large to keep */
+        boolean reset() {
+            count = 0;
+            return bytes.length <= MAX_RETAINED_BUFFER;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+    }
+}
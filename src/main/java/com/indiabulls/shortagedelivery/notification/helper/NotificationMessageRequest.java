@@ -1,11 +1,13 @@
 package com.indiabulls.shortagedelivery.notification.helper;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -18,4 +20,7 @@ public class NotificationMessageRequest<T> {
     private String templateName;
     private T templateDataJson;
     private NotificationSpecificFields dataFields;
+    /** Template data for receivers whose data differs from {@link #templateDataJson}, keyed by receiver. */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<String, T> receiverTemplateData;
 }
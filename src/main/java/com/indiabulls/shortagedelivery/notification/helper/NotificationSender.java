@@ -1,17 +1,25 @@
 package com.indiabulls.shortagedelivery.notification.helper;
 
 import com.indiabulls.shortagedelivery.notification.dto.ShortageEmailTemplateData;
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboundNotification;
 import lombok.RequiredArgsConstructor;
 import lombok.var;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
 public class NotificationSender {
 
+    // Shared by every email; NotificationSpecificFields is immutable
+    private static final NotificationSpecificFields EMAIL_DATA_FIELDS = NotificationSpecificFields.builder()
+            .emailDisplayName("Security Shortage")
+            .build();
+
     private final NotificationTransportService transport;
 
     @Value("${shortage.routing.email}") private String emailRoute;
@@ -24,19 +32,33 @@ public class NotificationSender {
     @Value("${shortage.templates.sms.name}")     private String smsTemplate;
     @Value("${shortage.templates.sms.sender}")   private String smsSender;
 
-    public void sendEmail(List<String> receivers, ShortageEmailTemplateData data, String tempName) {
+    public boolean sendEmail(List<String> receivers, ShortageEmailTemplateData data, String tempName) {
+        return sendEmail(receivers, data, null, tempName);
+    }
+
+    /**
+     * @param receiverData template data for receivers that differ from {@code data}, may be null
+     */
+    public boolean sendEmail(List<String> receivers, ShortageEmailTemplateData data,
+                             Map<String, ShortageEmailTemplateData> receiverData, String tempName) {
+        OutboundNotification email = composeEmail(receivers, data, receiverData, tempName);
+        return transport.send(email.getRoute(), email.getRequest());
+    }
+
+    /**
+     * Builds the email message {@link #sendEmail} would publish, without publishing it.
+     */
+    public OutboundNotification composeEmail(List<String> receivers, ShortageEmailTemplateData data,
+                                             Map<String, ShortageEmailTemplateData> receiverData, String tempName) {
         var req = NotificationMessageRequest.<ShortageEmailTemplateData>builder()
                 .receivers(receivers)
                 .sender(emailSender)
                 .subject(emailSubject)
                 .templateName(tempName)
                 .templateDataJson(data)
-                .dataFields(NotificationSpecificFields.builder()
-                        .emailDisplayName("Security Shortage")
-                        .build())
+                .receiverTemplateData(receiverData)
+                .dataFields(EMAIL_DATA_FIELDS)
                 .build();
-        transport.send(emailRoute, req);
+        return new OutboundNotification(NotificationChannel.EMAIL, emailRoute, req);
     }
-
-
 }
@@ -1,18 +1,25 @@
 package com.indiabulls.shortagedelivery.notification.helper;
 
-import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-@Data
-@Builder
-@AllArgsConstructor
-@NoArgsConstructor
+/** Immutable, so the composers can share one instance per channel across every message. */
+@Value
 public class NotificationSpecificFields {
-    private String emailDisplayName;
-    private List<Object> attachments;
-    private String eventType;
+    String emailDisplayName;
+    List<Object> attachments;
+    String eventType;
+
+    @Builder
+    @Jacksonized
+    private NotificationSpecificFields(String emailDisplayName, List<Object> attachments, String eventType) {
+        this.emailDisplayName = emailDisplayName;
+        this.attachments = attachments == null ? null : Collections.unmodifiableList(new ArrayList<>(attachments));
+        this.eventType = eventType;
+    }
 }
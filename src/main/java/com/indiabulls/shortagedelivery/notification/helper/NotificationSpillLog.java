@@ -0,0 +1,333 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of messages that could not be handed to the broker, kept in memory-mapped
+ * segment files so they survive a restart and are published later in the order they arrived.
+ * <p>
+ * Each segment is a file of {@code segmentBytes} holding records of
+ * {@code [length:int][crc32:int][consumed:byte][routeLength:short][route][body]}; a zero length
+ * marks the end. A record's length is written last, so a torn append is never read back.
+ * Consumed records are flagged in place and a segment is deleted once all of it has been consumed
+ * and writing has moved on to the next one. At most {@code maxBytes / segmentBytes} segments exist
+ * at a time; {@link #append} refuses messages beyond that.
+ * <p>
+ * Writes go to the page cache and are forced to disk by a background thread every
+ * {@code syncIntervalMs}, so a process crash loses nothing while a power failure can lose the
+ * last interval. Delivery is at least once: a record published just before a crash may be
+ * replayed after it. On Java 8 the space of a deleted segment is returned when its mapping is
+ * garbage collected.
+ */
+@Slf4j
+public class NotificationSpillLog implements AutoCloseable {
+
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 4 + 4 + 1 + 2;
+    private static final int CONSUMED_OFFSET = 8;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final ScheduledExecutorService syncer;
+
+    private long nextSequence;
+    private long pending;
+
+    public NotificationSpillLog(Path dir, int segmentBytes, long maxBytes, long syncIntervalMs) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(2, maxBytes / segmentBytes);
+        Files.createDirectories(dir);
+        recover();
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "notification-spill-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends a message after everything already in the log.
+     *
+     * @return false if the log is full or the message does not fit in a segment
+     */
+    public synchronized boolean append(String route, byte[] body) throws IOException {
+        byte[] routeBytes = route.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + routeBytes.length + body.length;
+        if (routeBytes.length > Short.MAX_VALUE || HEADER_BYTES - 2 + length > segmentBytes) {
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePosition + HEADER_BYTES - 2 + length > segmentBytes) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            tail = Segment.create(dir.resolve(fileName(nextSequence++)), segmentBytes);
+            segments.addLast(tail);
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = tail.buffer;
+        int start = tail.writePosition;
+        buffer.position(start + CONSUMED_OFFSET);
+        buffer.put((byte) 0);
+        buffer.putShort((short) routeBytes.length);
+        buffer.put(routeBytes);
+        buffer.put(body);
+        crc.update(routeBytes);
+        crc.update(body);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length);
+
+        tail.writePosition = start + HEADER_BYTES - 2 + length;
+        tail.dirty = true;
+        pending++;
+        return true;
+    }
+
+    /**
+     * @return the oldest message not yet consumed, or null if there is none
+     */
+    public synchronized SpilledMessage peek() {
+        Segment head = headWithPending();
+        return head == null ? null : head.read(head.readPosition);
+    }
+
+    /**
+     * @return up to {@code max} of the oldest messages not yet consumed, oldest first
+     */
+    public synchronized List<SpilledMessage> peek(int max) {
+        List<SpilledMessage> messages = new ArrayList<>(Math.min(max, 1024));
+        headWithPending();
+        // Records are consumed in order, so everything past each segment's read position is pending
+        for (Segment segment : segments) {
+            for (int position = segment.readPosition; position < segment.writePosition && messages.size() < max;
+                 position = segment.next(position)) {
+                messages.add(segment.read(position));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Marks the message returned by the last {@link #peek} as consumed.
+     */
+    public synchronized void consume() throws IOException {
+        Segment head = headWithPending();
+        if (head == null) {
+            return;
+        }
+        head.buffer.put(head.readPosition + CONSUMED_OFFSET, (byte) 1);
+        head.readPosition = head.next(head.readPosition);
+        head.skipConsumed();
+        head.dirty = true;
+        pending--;
+        headWithPending();
+    }
+
+    /**
+     * Marks the {@code count} oldest messages as consumed.
+     */
+    public synchronized void consume(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            consume();
+        }
+    }
+
+    public synchronized long pending() {
+        return pending;
+    }
+
+    public synchronized long diskBytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    /** Forces every segment written since the last call to disk. */
+    public void sync() {
+        List<Segment> dirty = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.dirty) {
+                    segment.dirty = false;
+                    dirty.add(segment);
+                }
+            }
+        }
+        for (Segment segment : dirty) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        syncer.shutdown();
+        sync();
+    }
+
+    /** Drops fully consumed segments ahead of the writer and returns the first one left with pending records. */
+    private Segment headWithPending() {
+        Segment head = segments.peekFirst();
+        while (head != null && head.readPosition >= head.writePosition && head != segments.peekLast()) {
+            segments.removeFirst();
+            try {
+                Files.deleteIfExists(head.path);
+            } catch (IOException e) {
+                log.warn("Could not delete spill segment {}", head.path, e);
+            }
+            head = segments.peekFirst();
+        }
+        return head == null || head.readPosition >= head.writePosition ? null : head;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            nextSequence = Math.max(nextSequence,
+                    Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+            Segment segment = Segment.open(file, segmentBytes);
+            segments.addLast(segment);
+            pending += segment.countPending();
+        }
+        headWithPending();
+        if (pending > 0) {
+            log.info("Recovered {} spilled notifications in {} segments from {}", pending, segments.size(), dir);
+        }
+    }
+
+    private static String fileName(long sequence) {
+        return String.format("%s%020d%s", PREFIX, sequence, SUFFIX);
+    }
+
+    public static final class SpilledMessage {
+        private final String route;
+        private final byte[] body;
+
+        SpilledMessage(String route, byte[] body) {
+            this.route = route;
+            this.body = body;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final MappedByteBuffer buffer;
+        final int capacity;
+        int readPosition;
+        int writePosition;
+        boolean dirty;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        static Segment create(Path path, int size) throws IOException {
+            return new Segment(path, map(path, size));
+        }
+
+        /** Maps an existing segment and finds where reading and writing continue. */
+        static Segment open(Path path, int size) throws IOException {
+            Segment segment = new Segment(path, map(path, (int) Math.max(size, Files.size(path))));
+            int position = 0;
+            while (segment.isValidRecord(position)) {
+                position = segment.next(position);
+            }
+            segment.writePosition = position;
+            segment.skipConsumed();
+            return segment;
+        }
+
+        private static MappedByteBuffer map(Path path, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        SpilledMessage read(int position) {
+            int length = buffer.getInt(position);
+            int routeLength = buffer.getShort(position + HEADER_BYTES - 2);
+            byte[] route = new byte[routeLength];
+            byte[] body = new byte[length - 2 - routeLength];
+            ByteBuffer record = buffer.duplicate();
+            record.position(position + HEADER_BYTES);
+            record.get(route);
+            record.get(body);
+            return new SpilledMessage(new String(route, StandardCharsets.UTF_8), body);
+        }
+
+        int next(int position) {
+            return position + HEADER_BYTES - 2 + buffer.getInt(position);
+        }
+
+        void skipConsumed() {
+            while (readPosition < writePosition && buffer.get(readPosition + CONSUMED_OFFSET) == 1) {
+                readPosition = next(readPosition);
+            }
+        }
+
+        long countPending() {
+            long count = 0;
+            for (int position = readPosition; position < writePosition; position = next(position)) {
+                if (buffer.get(position + CONSUMED_OFFSET) == 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /** A record that was completely written before the process stopped. */
+        private boolean isValidRecord(int position) {
+            if (position + HEADER_BYTES > capacity) {
+                return false;
+            }
+            int length = buffer.getInt(position);
+            if (length < 2 || position + HEADER_BYTES - 2 + length > capacity) {
+                return false;
+            }
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(position + HEADER_BYTES - 2 + 2).limit(position + HEADER_BYTES - 2 + length);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == buffer.getInt(position + 4);
+        }
+    }
+}
@@ -1,5 +1,16 @@
 package com.indiabulls.shortagedelivery.notification.helper;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface NotificationTransportService {
     boolean send(String routeName, NotificationMessageRequest<?> notificationMessageRequest);
+
+    /**
+     * Sends like {@link #send}, completing with whether the message was delivered: for a transport
+     * that confirms in the background, only once the confirm has arrived or the transport has
+     * given up on the message.
+     */
+    default CompletableFuture<Boolean> sendConfirmed(String routeName, NotificationMessageRequest<?> notificationMessageRequest) {
+        return CompletableFuture.completedFuture(send(routeName, notificationMessageRequest));
+    }
 }
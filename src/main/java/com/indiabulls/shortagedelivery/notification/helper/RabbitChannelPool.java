@@ -0,0 +1,155 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of channels over one AMQP connection, each used by one thread at a time.
+ * <p>
+ * A {@link Channel} must not be published on concurrently, so callers borrow a channel for the
+ * duration of a publish. A channel closed by the broker (or failing a publish) is dropped and a
+ * fresh one is opened on the same slot the next time it is borrowed. Publishes are counted and
+ * timed per slot as {@code rabbitmq.channel.publish}.
+ */
+@Slf4j
+public class RabbitChannelPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface ChannelCallback<T> {
+        T doInChannel(Channel channel) throws IOException;
+    }
+
+    private final Connection connection;
+    private final long borrowTimeoutMs;
+    private final BlockingQueue<Slot> idle;
+    private final Slot[] slots;
+
+    public RabbitChannelPool(Connection connection, int size, long borrowTimeoutMs, MeterRegistry meterRegistry) {
+        this.connection = connection;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i, meterRegistry);
+            idle.add(slots[i]);
+        }
+    }
+
+    public void publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) throws IOException {
+        Slot slot = borrow();
+        long start = System.nanoTime();
+        try {
+            slot.channel().basicPublish(exchange, routingKey, props, body);
+            slot.published.increment();
+        } catch (IOException | RuntimeException e) {
+            slot.failed.increment();
+            slot.discard();
+            throw e;
+        } finally {
+            slot.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            idle.add(slot);
+        }
+    }
+
+    /**
+     * Runs {@code callback} with exclusive use of a pooled channel.
+     */
+    public <T> T execute(ChannelCallback<T> callback) throws IOException {
+        Slot slot = borrow();
+        try {
+            return callback.doInChannel(slot.channel());
+        } catch (IOException | RuntimeException e) {
+            slot.discard();
+            throw e;
+        } finally {
+            idle.add(slot);
+        }
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public int idleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        for (Slot slot : slots) {
+            slot.discard();
+        }
+    }
+
+    private Slot borrow() throws IOException {
+        try {
+            Slot slot = idle.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            if (slot == null) {
+                throw new IOException("No RabbitMQ channel available within " + borrowTimeoutMs + " ms");
+            }
+            return slot;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a RabbitMQ channel", e);
+        }
+    }
+
+    private final class Slot {
+        private final int index;
+        private final Counter published;
+        private final Counter failed;
+        private final Counter reopened;
+        private final Timer latency;
+        private Channel channel;
+
+        private Slot(int index, MeterRegistry meterRegistry) {
+            this.index = index;
+            String channelTag = Integer.toString(index);
+            this.published = Counter.builder("rabbitmq.channel.publish").tag("channel", channelTag)
+                    .tag("outcome", "success").register(meterRegistry);
+            this.failed = Counter.builder("rabbitmq.channel.publish").tag("channel", channelTag)
+                    .tag("outcome", "failure").register(meterRegistry);
+            this.reopened = Counter.builder("rabbitmq.channel.reopened").tag("channel", channelTag)
+                    .register(meterRegistry);
+            this.latency = Timer.builder("rabbitmq.channel.publish.latency").tag("channel", channelTag)
+                    .register(meterRegistry);
+        }
+
+        /** Only called by the thread holding the slot. */
+        private Channel channel() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                if (channel != null) {
+                    reopened.increment();
+                    log.warn("RabbitMQ channel {} was closed ({}), opening a new one", index, channel.getCloseReason());
+                }
+                channel = connection.createChannel();
+                if (channel == null) {
+                    throw new IOException("No channel number available on the RabbitMQ connection");
+                }
+            }
+            return channel;
+        }
+
+        private void discard() {
+            Channel current = channel;
+            channel = null;
+            if (current != null && current.isOpen()) {
+                try {
+                    current.close();
+                } catch (Exception e) {
+                    log.debug("Error closing RabbitMQ channel {}", index, e);
+                }
+            }
+        }
+    }
+}
@@ -1,21 +1,79 @@
 package com.indiabulls.shortagedelivery.notification.helper;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Publishes notifications to the RabbitMQ exchange. This is the transport unless
+ * {@code notification.transport} names another one, in which case a
+ * {@link NotificationTransportService} bean must be supplied instead (e.g. by the load harness).
+ * <p>
+ * The application starts whether or not the broker is reachable: the connection is retried in
+ * the background every {@code rabbitmq.reconnect-interval-ms}. While there is no connection, the
+ * broker blocks publishers (flow control) or a publish fails, messages go to a
+ * {@link NotificationSpillLog} and count as accepted, as do messages the async publisher refuses
+ * or gives up on; a replayer thread publishes them in order once the broker takes messages again,
+ * and new messages queue behind them until it has caught up. Only when the spill log is full (or
+ * disabled) does {@link #send} return false.
+ * <p>
+ * In async mode {@link #send} returns once the message is queued; {@link #sendConfirmed} reports
+ * whether the broker confirmed it or it was spilled. The replayer only consumes spilled messages
+ * once confirmed, so a message given up on is replayed again rather than lost.
+ */
+@Slf4j
 @Component
+@ConditionalOnProperty(name = "notification.transport", havingValue = "rabbitmq", matchIfMissing = true)
 public class RabbitMqTransportService implements NotificationTransportService {
 
-    private Connection connection;
-    private Channel channel;
+    // Shared by every message; BasicProperties is immutable
+    private static final AMQP.BasicProperties JSON_PROPERTIES = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .build();
+
+    private static final long REPLAY_IDLE_MS = 100;
+    private static final int REPLAY_BATCH = 500;
+    private static final long REPLAY_CONFIRM_TIMEOUT_MS = 30_000;
+
+    private volatile Connection connection;
+    private volatile RabbitChannelPool channelPool;
+    private volatile AsyncConfirmPublisher confirmPublisher;
+    // Connected, declared and ready to publish
+    private volatile boolean ready;
+    // The broker has told us to stop publishing (memory or disk alarm)
+    private volatile boolean blocked;
+    private volatile boolean running = true;
+    // Only log the transition, not every refused message
+    private volatile boolean spillFull;
+
+    private NotificationSpillLog spillLog;
+    private ScheduledExecutorService connector;
+    private Thread replayer;
+    private Counter spilled;
+    private Counter replayed;
+    private Counter rejected;
 
     @Value("${rabbitmq.host}")
     private String host;
@@ -35,46 +93,356 @@ public class RabbitMqTransportService implements NotificationTransportService {
     @Value("${rabbitmq.exchangeType}")
     private String exchangeType;
 
-    private final ObjectMapper objectMapper;
+    // Channels for sync publishing; a channel is only ever used by one thread at a time
+    @Value("${rabbitmq.channel-pool.size:8}")
+    private int channelPoolSize;
+
+    @Value("${rabbitmq.channel-pool.borrow-timeout-ms:5000}")
+    private long channelBorrowTimeoutMs;
+
+    // sync: publish on the caller's thread; async: queue, batch and confirm in the background
+    @Value("${rabbitmq.publisher.mode:sync}")
+    private String publisherMode;
+
+    @Value("${rabbitmq.publisher.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${rabbitmq.publisher.batch-size:100}")
+    private int batchSize;
+
+    @Value("${rabbitmq.publisher.max-outstanding-confirms:1000}")
+    private int maxOutstandingConfirms;
+
+    @Value("${rabbitmq.publisher.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${rabbitmq.reconnect-interval-ms:5000}")
+    private long reconnectIntervalMs;
+
+    @Value("${rabbitmq.spill.enabled:true}")
+    private boolean spillEnabled;
+
+    @Value("${rabbitmq.spill.dir:notification-spill}")
+    private String spillDir;
+
+    @Value("${rabbitmq.spill.segment-bytes:67108864}")
+    private int spillSegmentBytes;
+
+    @Value("${rabbitmq.spill.max-bytes:1073741824}")
+    private long spillMaxBytes;
+
+    @Value("${rabbitmq.spill.sync-interval-ms:200}")
+    private long spillSyncIntervalMs;
+
+    private final NotificationMessageEncoder encoder;
+    private final MeterRegistry meterRegistry;
 
-    public RabbitMqTransportService(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    public RabbitMqTransportService(NotificationMessageEncoder encoder, MeterRegistry meterRegistry) {
+        this.encoder = encoder;
+        this.meterRegistry = meterRegistry;
     }
 
     @PostConstruct
-    public void init() {
+    public void init() throws IOException {
+        if (spillEnabled) {
+            spillLog = new NotificationSpillLog(Paths.get(spillDir), spillSegmentBytes, spillMaxBytes, spillSyncIntervalMs);
+            spilled = spillCounter("spilled");
+            replayed = spillCounter("replayed");
+            rejected = spillCounter("rejected");
+            Gauge.builder("rabbitmq.spill.pending", spillLog, NotificationSpillLog::pending)
+                    .description("Spilled messages not yet published")
+                    .register(meterRegistry);
+            replayer = new Thread(this::replayLoop, "rabbitmq-spill-replayer");
+            replayer.setDaemon(true);
+            replayer.start();
+        }
+
+        connector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rabbitmq-connector");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!connect()) {
+            connector.scheduleWithFixedDelay(() -> {
+                if (!ready && connect()) {
+                    connector.shutdown();
+                }
+            }, reconnectIntervalMs, reconnectIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens the connection and declares the exchange; later drops are handled by the client's
+     * automatic recovery.
+     *
+     * @return false if the broker could not be reached, to be retried
+     */
+    private boolean connect() {
+        Connection newConnection = null;
         try {
             ConnectionFactory factory = new ConnectionFactory();
             factory.setHost(host);
             factory.setPort(port);
             factory.setUsername(username);
             factory.setPassword(password);
+            factory.setAutomaticRecoveryEnabled(true);
+
+            newConnection = factory.newConnection();
+            newConnection.addBlockedListener(
+                    reason -> {
+                        log.warn("RabbitMQ blocked publishing: {}", reason);
+                        blocked = true;
+                    },
+                    () -> {
+                        log.info("RabbitMQ unblocked publishing");
+                        blocked = false;
+                    });
+            RabbitChannelPool pool = new RabbitChannelPool(newConnection, channelPoolSize, channelBorrowTimeoutMs, meterRegistry);
 
-            this.connection = factory.newConnection();
-            this.channel = connection.createChannel();
+            pool.execute(channel -> {
+                channel.exchangeDeclare(exchange, exchangeType, true);
+                channel.queueDeclare("notification.queue", true, false, false, null);
+                return channel.queueBind("notification.queue", exchange, "notification.key");
+            });
 
-            channel.exchangeDeclare(exchange, exchangeType, true);
-            channel.queueDeclare("notification.queue", true, false, false, null);
-            channel.queueBind("notification.queue", exchange, "notification.key");
+            if ("async".equalsIgnoreCase(publisherMode)) {
+                confirmPublisher = new AsyncConfirmPublisher(newConnection.createChannel(), exchange,
+                        queueCapacity, batchSize, maxOutstandingConfirms, maxRetries);
+            }
+            this.connection = newConnection;
+            this.channelPool = pool;
+            this.ready = true;
+            log.info("Connected to RabbitMQ at {}:{}", host, port);
+            return true;
 
         } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize RabbitMQ connection", e);
+            log.warn("Cannot connect to RabbitMQ at {}:{}, retrying in {} ms{}: {}", host, port, reconnectIntervalMs,
+                    spillLog != null ? " and spilling messages meanwhile" : "", e.toString());
+            closeQuietly(newConnection);
+            return false;
         }
     }
 
+    /**
+     * @return true once the message is published, queued (async mode) or spilled
+     */
     @Override
     public boolean send(String routeName, NotificationMessageRequest<?> notificationMessageRequest) {
+        CompletableFuture<Boolean> outcome = sendConfirmed(routeName, notificationMessageRequest);
+        return !outcome.isDone() || outcome.join();
+    }
+
+    /**
+     * @return completed with true once the message is published (sync mode), confirmed (async
+     * mode) or spilled; false if it was refused or given up on
+     */
+    @Override
+    public CompletableFuture<Boolean> sendConfirmed(String routeName, NotificationMessageRequest<?> notificationMessageRequest) {
+        long start = System.nanoTime();
+        String outcome = "failure";
         try {
-            String message = objectMapper.writeValueAsString(notificationMessageRequest);
-            AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
-                    .contentType("application/json")
-                    .build();
-            channel.basicPublish(exchange, routeName, props, message.getBytes(StandardCharsets.UTF_8));
-            System.out.println("Sent to RabbitMQ exchange=" + exchange + " route=" + routeName + " message=" + message);
-            return true;
+            byte[] body = encoder.encode(notificationMessageRequest);
+            // While anything is spilled, new messages go behind it so they keep their order
+            if (spillLog == null || (brokerAvailable() && spillLog.pending() == 0)) {
+                try {
+                    CompletableFuture<Boolean> published = publish(routeName, body);
+                    if (!published.isDone() || published.join()) {
+                        log.debug("Sent to RabbitMQ exchange={} route={} bytes={}", exchange, routeName, body.length);
+                        outcome = "success";
+                        // Given up on after the retries: spilled, to be replayed behind newer messages
+                        return spillLog == null ? published
+                                : published.thenApply(delivered -> delivered || spillGivenUp(routeName, body));
+                    }
+                    if (spillLog == null) {
+                        return published;
+                    }
+                    // Refused by the async publisher (queue full or closed): spilled like a broker outage
+                } catch (Exception e) {
+                    if (spillLog == null) {
+                        throw e;
+                    }
+                    log.warn("Failed to publish to RabbitMQ exchange={} route={}, spilling: {}", exchange, routeName, e.toString());
+                }
+            }
+            if (!spill(routeName, body)) {
+                return CompletableFuture.completedFuture(false);
+            }
+            outcome = "spilled";
+            return CompletableFuture.completedFuture(true);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Failed to publish to RabbitMQ exchange={} route={}", exchange, routeName, e);
+            return CompletableFuture.completedFuture(false);
+        } finally {
+            // Serialize + publish (sync), serialize + enqueue (async) or serialize + spill, per route
+            Timer.builder("rabbitmq.publish")
+                    .tag("route", routeName)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return completed with whether the broker took the message: at once in sync mode, on the
+     * confirm in async mode
+     */
+    private CompletableFuture<Boolean> publish(String routeName, byte[] body) throws IOException {
+        AsyncConfirmPublisher publisher = confirmPublisher;
+        if (publisher != null) {
+            return publisher.submit(routeName, JSON_PROPERTIES, body);
+        }
+        RabbitChannelPool pool = channelPool;
+        if (pool == null) {
+            throw new IOException("Not connected to RabbitMQ");
+        }
+        pool.publish(exchange, routeName, JSON_PROPERTIES, body);
+        return CompletableFuture.completedFuture(true);
+    }
+
+    private boolean brokerAvailable() {
+        Connection current = connection;
+        return ready && !blocked && current != null && current.isOpen();
+    }
+
+    private boolean spill(String routeName, byte[] body) throws IOException {
+        if (spillLog.append(routeName, body)) {
+            spilled.increment();
+            if (spillFull) {
+                spillFull = false;
+                log.info("Spill log is taking messages again");
+            }
+            return true;
+        }
+        rejected.increment();
+        if (!spillFull) {
+            spillFull = true;
+            log.error("Spill log is full ({} bytes), refusing messages until the broker drains it", spillLog.diskBytes());
+        }
+        return false;
+    }
+
+    /** Spills a message the broker never confirmed; runs on the thread that gave up on it. */
+    private boolean spillGivenUp(String routeName, byte[] body) {
+        try {
+            return spill(routeName, body);
+        } catch (IOException e) {
+            log.error("Failed to spill unconfirmed message to route={}", routeName, e);
             return false;
         }
     }
+
+    /**
+     * Publishes spilled messages oldest first whenever the broker is taking messages, a batch at a
+     * time; a message is consumed once the broker has it, so whatever follows one that was given
+     * up on is replayed again.
+     */
+    private void replayLoop() {
+        while (running) {
+            try {
+                List<NotificationSpillLog.SpilledMessage> batch = brokerAvailable()
+                        ? spillLog.peek(REPLAY_BATCH) : Collections.<NotificationSpillLog.SpilledMessage>emptyList();
+                if (batch.isEmpty()) {
+                    Thread.sleep(REPLAY_IDLE_MS);
+                    continue;
+                }
+                List<CompletableFuture<Boolean>> outcomes = new ArrayList<>(batch.size());
+                Exception failure = null;
+                try {
+                    for (NotificationSpillLog.SpilledMessage message : batch) {
+                        outcomes.add(publish(message.getRoute(), message.getBody()));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                }
+                int delivered = confirmedPrefix(outcomes);
+                spillLog.consume(delivered);
+                replayed.increment(delivered);
+                if (failure != null) {
+                    throw failure;
+                }
+                if (delivered < batch.size()) {
+                    Thread.sleep(REPLAY_IDLE_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Replaying spilled messages failed, retrying in {} ms: {}", reconnectIntervalMs, e.toString());
+                try {
+                    Thread.sleep(reconnectIntervalMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /** The number of leading outcomes that complete with true. */
+    private static int confirmedPrefix(List<CompletableFuture<Boolean>> outcomes) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPLAY_CONFIRM_TIMEOUT_MS);
+        int confirmed = 0;
+        for (CompletableFuture<Boolean> outcome : outcomes) {
+            try {
+                if (!outcome.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                break;
+            }
+            confirmed++;
+        }
+        return confirmed;
+    }
+
+    private Counter spillCounter(String outcome) {
+        return Counter.builder("rabbitmq.spill.records")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.abort();
+            } catch (Exception ignored) {
+                // already unusable
+            }
+        }
+    }
+
+    /**
+     * Waits for queued messages to be confirmed; a no-op in sync mode.
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        return confirmPublisher == null || confirmPublisher.flush(timeout, unit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (connector != null) {
+            connector.shutdownNow();
+        }
+        if (replayer != null) {
+            replayer.interrupt();
+        }
+        try {
+            if (confirmPublisher != null) {
+                confirmPublisher.flush(30, TimeUnit.SECONDS);
+                confirmPublisher.close();
+            }
+            if (channelPool != null) {
+                channelPool.close();
+            }
+            if (connection != null && connection.isOpen()) {
+                connection.close();
+            }
+        } catch (Exception e) {
+            log.warn("Error while closing RabbitMQ connection", e);
+        }
+        if (spillLog != null) {
+            spillLog.close();
+        }
+    }
 }
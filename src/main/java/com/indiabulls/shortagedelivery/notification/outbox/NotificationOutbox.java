@@ -0,0 +1,66 @@
+package com.indiabulls.shortagedelivery.notification.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes notifications to focus.notification_outbox on the caller's connection, so they commit or
+ * roll back together with the shortage updates of the same transaction. {@link OutboxRelay}
+ * publishes them afterwards.
+ */
+@Component
+public class NotificationOutbox {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO focus.notification_outbox (channel, route, payload) VALUES (?, ?, ?::jsonb)";
+
+    private final ObjectMapper objectMapper;
+
+    public NotificationOutbox(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return the ids of the rows written, in the order of {@code notifications}
+     */
+    public List<Long> enqueue(Connection conn, List<OutboundNotification> notifications) throws SQLException {
+        if (notifications.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(notifications.size());
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, new String[]{"id"})) {
+            for (OutboundNotification notification : notifications) {
+                ps.setString(1, notification.getChannel().name());
+                ps.setString(2, notification.getRoute());
+                ps.setString(3, toJson(notification));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                while (keys.next()) {
+                    ids.add(keys.getLong(1));
+                }
+            }
+        }
+        // The ids of one statement are drawn in row order
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private String toJson(OutboundNotification notification) throws SQLException {
+        try {
+            return objectMapper.writeValueAsString(notification.getRequest());
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Cannot serialize " + notification.getChannel() + " notification", e);
+        }
+    }
+}
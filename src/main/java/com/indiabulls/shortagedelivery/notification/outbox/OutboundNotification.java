@@ -0,0 +1,17 @@
+package com.indiabulls.shortagedelivery.notification.outbox;
+
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A fully built notification message and the route it is published to.
+ */
+@Data
+@AllArgsConstructor
+public class OutboundNotification {
+    private NotificationChannel channel;
+    private String route;
+    private NotificationMessageRequest<?> request;
+}
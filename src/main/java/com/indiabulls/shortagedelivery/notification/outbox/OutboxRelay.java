@@ -0,0 +1,395 @@
+package com.indiabulls.shortagedelivery.notification.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.indiabulls.shortagedelivery.notification.fanout.FanOutReport;
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationFanOutEngine;
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationTask;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRequest;
+import com.indiabulls.shortagedelivery.notification.helper.NotificationTransportService;
+import com.indiabulls.shortagedelivery.notification.state.NotificationStateStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the rows of focus.notification_outbox to {@link NotificationTransportService}.
+ * <p>
+ * Rows are claimed in batches of {@code shortage.outbox.batch-size} with
+ * {@code FOR UPDATE SKIP LOCKED}, so several instances can relay the same table, and are marked
+ * SENDING before anything is published; no transaction is held open while the broker is slow.
+ * Each batch goes through the {@link NotificationFanOutEngine}; once the transport has confirmed
+ * or given up on every message (at most {@code shortage.outbox.confirm-timeout-ms}), each row is
+ * marked SENT or scheduled for a retry with exponential backoff. After
+ * {@code shortage.outbox.max-attempts} a row is left as FAILED, and the
+ * {@link NotificationStateStore} forgets the notifications it carried. Rows stuck in SENDING (the
+ * relay died mid-batch) are claimed again after {@code shortage.outbox.claim-timeout-ms}, so a
+ * message may be published twice but never lost.
+ * <p>
+ * The relay polls every {@code shortage.outbox.poll-interval-ms} on its own thread and can be woken
+ * up right after new rows are committed.
+ * <p>
+ * Every attempt is counted in {@code shortage.notifications} by channel, route and outcome
+ * ({@code published}, {@code failed} or {@code unreadable}); {@code shortage.outbox.batch} times
+ * each batch from claim to the status update.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private static final String CLAIM_SQL =
+            "UPDATE focus.notification_outbox o " +
+                    "SET status = 'SENDING', claimed_at = now(), attempts = o.attempts + 1 " +
+                    "WHERE o.id IN (SELECT id FROM focus.notification_outbox " +
+                    "    WHERE (status = 'PENDING' AND next_attempt_at <= now()) " +
+                    "       OR (status = 'SENDING' AND claimed_at < now() - ? * interval '1 millisecond') " +
+                    "    ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                    "RETURNING o.id, o.channel, o.route, o.payload";
+
+    private static final String SENT_SQL =
+            "UPDATE focus.notification_outbox " +
+                    "SET status = 'SENT', sent_at = now(), claimed_at = NULL, last_error = NULL " +
+                    "WHERE id = ANY(?)";
+
+    private static final String RETRY_SQL =
+            "UPDATE focus.notification_outbox " +
+                    "SET status = CASE WHEN ? OR attempts >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+                    "    next_attempt_at = now() + LEAST(? * power(2, attempts - 1), ?) * interval '1 millisecond', " +
+                    "    claimed_at = NULL, last_error = ? " +
+                    "WHERE id = ?";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM focus.notification_outbox " +
+                    "WHERE status = 'SENT' AND sent_at < now() - make_interval(days => ?)";
+
+    private static final String STATUS_SQL =
+            "SELECT status, count(*) FROM focus.notification_outbox GROUP BY status";
+
+    private static final String RETRY_FAILED_SQL =
+            "UPDATE focus.notification_outbox " +
+                    "SET status = 'PENDING', attempts = 0, next_attempt_at = now() WHERE status = 'FAILED'";
+
+    private static final long PURGE_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final DataSource dataSource;
+    private final NotificationTransportService transport;
+    private final NotificationFanOutEngine fanOutEngine;
+    private final NotificationStateStore notificationStateStore;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Timer batchTimer;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private volatile long lastPurgeMillis;
+
+    @Value("${shortage.outbox.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+
+    @Value("${shortage.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${shortage.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${shortage.outbox.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    @Value("${shortage.outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    @Value("${shortage.outbox.claim-timeout-ms:300000}")
+    private long claimTimeoutMs;
+
+    @Value("${shortage.outbox.confirm-timeout-ms:60000}")
+    private long confirmTimeoutMs;
+
+    @Value("${shortage.outbox.retention-days:7}")
+    private int retentionDays;
+
+    public OutboxRelay(DataSource dataSource, NotificationTransportService transport,
+                       NotificationFanOutEngine fanOutEngine, NotificationStateStore notificationStateStore,
+                       ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.transport = transport;
+        this.fanOutEngine = fanOutEngine;
+        this.notificationStateStore = notificationStateStore;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.batchTimer = Timer.builder("shortage.outbox.batch").register(meterRegistry);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (pollIntervalMs > 0) {
+            executor.scheduleWithFixedDelay(this::drainQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Drains the outbox on the relay thread as soon as possible; calls made while a wake-up is
+     * already queued are collapsed into it.
+     */
+    public void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                wakeUpPending.set(false);
+                drainQuietly();
+            });
+        }
+    }
+
+    /**
+     * Publishes batches until no row is due.
+     *
+     * @return the number of messages published
+     */
+    public long drain() throws SQLException {
+        long published = 0;
+        while (true) {
+            long start = System.nanoTime();
+            List<OutboxRow> rows = claim();
+            if (rows.isEmpty()) {
+                return published;
+            }
+            published += publish(rows);
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Row count per status. */
+    public Map<String, Long> statusCounts() throws SQLException {
+        Map<String, Long> counts = new TreeMap<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(STATUS_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Gives FAILED rows a fresh set of attempts. Their notification state is gone, so a shortage run
+     * in between may queue them once more.
+     *
+     * @return the number of rows requeued
+     */
+    public int retryFailed() throws SQLException {
+        int requeued;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(RETRY_FAILED_SQL)) {
+            requeued = ps.executeUpdate();
+        }
+        if (requeued > 0) {
+            wakeUp();
+        }
+        return requeued;
+    }
+
+    private void drainQuietly() {
+        try {
+            long published = drain();
+            if (published > 0) {
+                log.info("Outbox relay published {} messages", published);
+            }
+            purgeIfDue();
+        } catch (Exception e) {
+            log.error("Outbox relay failed, retrying on the next poll", e);
+        }
+    }
+
+    private List<OutboxRow> claim() throws SQLException {
+        List<OutboxRow> rows = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(CLAIM_SQL)) {
+            ps.setLong(1, claimTimeoutMs);
+            ps.setInt(2, batchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new OutboxRow(rs.getLong("id"), NotificationChannel.valueOf(rs.getString("channel")),
+                            rs.getString("route"), rs.getString("payload")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** @return the number of rows published */
+    private long publish(List<OutboxRow> rows) throws SQLException {
+        List<Long> sent = new ArrayList<>();
+        Map<Long, String> failed = new ConcurrentHashMap<>();
+        Map<OutboxRow, CompletableFuture<Boolean>> outcomes = new ConcurrentHashMap<>();
+        Map<Long, String> unreadable = new TreeMap<>();
+
+        List<NotificationTask> tasks = new ArrayList<>(rows.size());
+        for (OutboxRow row : rows) {
+            NotificationMessageRequest<?> request;
+            try {
+                request = objectMapper.readValue(row.payload, NotificationMessageRequest.class);
+            } catch (IOException e) {
+                unreadable.put(row.id, "Unreadable payload: " + e.getMessage());
+                count(row, "unreadable");
+                continue;
+            }
+            String partitionKey = request.getReceivers() == null || request.getReceivers().isEmpty()
+                    ? String.valueOf(row.id) : request.getReceivers().get(0);
+            tasks.add(new NotificationTask(row.channel, partitionKey, () -> {
+                try {
+                    CompletableFuture<Boolean> outcome = transport.sendConfirmed(row.route, request);
+                    outcomes.put(row, outcome);
+                    // Not known yet while the broker has to confirm it
+                    return !outcome.isDone() || outcome.join();
+                } catch (RuntimeException e) {
+                    failed.put(row.id, String.valueOf(e.getMessage()));
+                    count(row, "failed");
+                    return false;
+                }
+            }));
+        }
+
+        if (!tasks.isEmpty()) {
+            FanOutReport report = fanOutEngine.dispatch(tasks);
+            log.debug("Outbox batch of {} rows: {}", rows.size(), report.summary());
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        for (Map.Entry<OutboxRow, CompletableFuture<Boolean>> outcome : outcomes.entrySet()) {
+            OutboxRow row = outcome.getKey();
+            String error = awaitOutcome(outcome.getValue(), deadline);
+            if (error == null) {
+                sent.add(row.id);
+                count(row, "published");
+            } else {
+                failed.put(row.id, error);
+                count(row, "failed");
+            }
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            if (!sent.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(SENT_SQL)) {
+                    ps.setArray(1, conn.createArrayOf("bigint", sent.toArray()));
+                    ps.executeUpdate();
+                }
+            }
+            if (!failed.isEmpty() || !unreadable.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(RETRY_SQL)) {
+                    addRetries(ps, failed, false);
+                    addRetries(ps, unreadable, true);
+                    ps.executeBatch();
+                }
+                log.warn("Outbox relay: {} of {} messages failed, {} unreadable",
+                        failed.size(), rows.size(), unreadable.size());
+                // Rows out of attempts will not be sent, so the next run has to notify them again
+                List<Long> retried = new ArrayList<>(failed.keySet());
+                retried.addAll(unreadable.keySet());
+                int forgotten = notificationStateStore.forgetFailed(conn, retried);
+                if (forgotten > 0) {
+                    log.warn("Outbox relay gave up on {} notifications, they will be queued again", forgotten);
+                }
+            }
+        }
+        return sent.size();
+    }
+
+    /** @return null if the message was delivered, otherwise why not */
+    private String awaitOutcome(CompletableFuture<Boolean> outcome, long deadline) {
+        try {
+            return outcome.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    ? null : "Not accepted by transport";
+        } catch (TimeoutException e) {
+            return "Not confirmed within " + confirmTimeoutMs + " ms";
+        } catch (ExecutionException e) {
+            return String.valueOf(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Interrupted while waiting for the confirm";
+        }
+    }
+
+    private void count(OutboxRow row, String outcome) {
+        Counter.builder("shortage.notifications")
+                .tag("channel", row.channel.name())
+                .tag("route", row.route)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void addRetries(PreparedStatement ps, Map<Long, String> errors, boolean giveUp) throws SQLException {
+        for (Map.Entry<Long, String> error : errors.entrySet()) {
+            ps.setBoolean(1, giveUp);
+            ps.setInt(2, maxAttempts);
+            ps.setLong(3, retryBackoffMs);
+            ps.setLong(4, maxBackoffMs);
+            ps.setString(5, error.getValue());
+            ps.setLong(6, error.getKey());
+            ps.addBatch();
+        }
+    }
+
+    private void purgeIfDue() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeMillis < PURGE_INTERVAL_MS) {
+            return;
+        }
+        lastPurgeMillis = now;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(PURGE_SQL)) {
+            ps.setInt(1, retentionDays);
+            int purged = ps.executeUpdate();
+            if (purged > 0) {
+                log.info("Purged {} sent outbox rows older than {} days", purged, retentionDays);
+            }
+        }
+    }
+
+    private static final class OutboxRow {
+        final long id;
+        final NotificationChannel channel;
+        final String route;
+        final String payload;
+
+        OutboxRow(long id, NotificationChannel channel, String route, String payload) {
+            this.id = id;
+            this.channel = channel;
+            this.route = route;
+            this.payload = payload;
+        }
+    }
+}
@@ -4,32 +4,22 @@ import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRe
 import com.indiabulls.shortagedelivery.notification.helper.NotificationSender;
 import com.indiabulls.shortagedelivery.notification.dto.ShortageEmailTemplateData;
 import com.indiabulls.shortagedelivery.notification.dto.ShortageSMSTemplateData;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboundNotification;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import lombok.var;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.util.Collections;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmailNotificationService {
 
     private final NotificationSender notificationSender;
 
-    @Value("${spring.datasource.url}")
-    private String jdbcUrl;
-
-    @Value("${spring.datasource.username}")
-    private String jdbcUser;
-
-    @Value("${spring.datasource.password}")
-    private String jdbcPass;
-
     @Value("${shortage.routing.email}")
     private String emailRoute;
 
@@ -52,22 +42,30 @@ public class EmailNotificationService {
     private String smsSender;
 
     // --- New method to accept JSON payload for Email ---
-    public void sendEmailNotification(NotificationMessageRequest<ShortageEmailTemplateData> request) {
+    public boolean sendEmailNotification(NotificationMessageRequest<ShortageEmailTemplateData> request) {
         var req = NotificationMessageRequest.<ShortageEmailTemplateData>builder()
                 .receivers(request.getReceivers())
                 .sender(emailSender)              // override with configured sender
                 .subject(emailSubject)            // override with configured subject
                 .templateName(request.getTemplateName())      // override with configured template
                 .templateDataJson(request.getTemplateDataJson())
+                .receiverTemplateData(request.getReceiverTemplateData())
                 .dataFields(request.getDataFields())
                 .build();
 
         // Forward to NotificationSender
-        notificationSender.sendEmail(req.getReceivers(), req.getTemplateDataJson(),req.getTemplateName());
+        boolean sent = notificationSender.sendEmail(req.getReceivers(), req.getTemplateDataJson(),
+                req.getReceiverTemplateData(), req.getTemplateName());
 
-        System.out.println("Email notification sent to " + req.getTemplateDataJson().getSYMBOL());
+        log.debug("Email notification for {} sent: {}", req.getTemplateDataJson().getSYMBOL(), sent);
+        return sent;
     }
 
-
-
+    /**
+     * Builds the message {@link #sendEmailNotification} would publish, for the notification outbox.
+     */
+    public OutboundNotification composeEmailNotification(NotificationMessageRequest<ShortageEmailTemplateData> request) {
+        return notificationSender.composeEmail(request.getReceivers(), request.getTemplateDataJson(),
+                request.getReceiverTemplateData(), request.getTemplateName());
+    }
 }
@@ -4,17 +4,26 @@ import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRe
 import com.indiabulls.shortagedelivery.notification.helper.NotificationSpecificFields;
 import com.indiabulls.shortagedelivery.notification.helper.NotificationTransportService;
 import com.indiabulls.shortagedelivery.notification.dto.PushNotificationRequest;
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboundNotification;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.var;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PushNotificationService {
 
+    // Shared by every push; NotificationSpecificFields is immutable
+    private static final NotificationSpecificFields PUSH_DATA_FIELDS = NotificationSpecificFields.builder()
+            .eventType("event")
+            .build();
+
     private final NotificationTransportService transport;
 
     @Value("${shortage.templates.push.name}")
@@ -25,22 +34,26 @@ public class PushNotificationService {
 //    @Value("${shortage.templates.push.name}")
 //    private String pushTemplate;
 
-    public void sendPush(PushNotificationRequest request) {
+    public boolean sendPush(PushNotificationRequest request) {
+        OutboundNotification push = composePush(request);
 
-        var req = NotificationMessageRequest.<Object>builder()
+        log.debug("Publishing push notification request: {}", push.getRequest());
+
+        return transport.send(push.getRoute(), push.getRequest());
+    }
+
+    /**
+     * Builds the message {@link #sendPush} would publish, for the notification outbox.
+     */
+    public OutboundNotification composePush(PushNotificationRequest request) {
+        var req = NotificationMessageRequest.<Map<String, Object>>builder()
                 .receivers(request.getReceivers())
                 .templateName(request.getTemplateName())
                 .templateDataJson(request.getTemplateDataJson())
-                .dataFields(NotificationSpecificFields.builder()
-                        .emailDisplayName(null)
-                        .attachments(null)
-                        .eventType("event")
-                        .build())
+                .receiverTemplateData(request.getReceiverTemplateDataJson())
+                .dataFields(PUSH_DATA_FIELDS)
                 .build();
 
-
-        log.info("Publishing push notification request: {}", req);
-
-        transport.send(pushRoute, req);
+        return new OutboundNotification(NotificationChannel.PUSH, pushRoute, req);
     }
 }
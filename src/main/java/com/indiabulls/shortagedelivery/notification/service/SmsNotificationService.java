@@ -4,37 +4,53 @@ import com.indiabulls.shortagedelivery.notification.helper.NotificationMessageRe
 import com.indiabulls.shortagedelivery.notification.helper.NotificationSpecificFields;
 import com.indiabulls.shortagedelivery.notification.helper.NotificationTransportService;
 import com.indiabulls.shortagedelivery.notification.dto.SmsNotificationRequest;
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import com.indiabulls.shortagedelivery.notification.outbox.OutboundNotification;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.var;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SmsNotificationService {
 
+    // Shared by every SMS; NotificationSpecificFields is immutable
+    private static final NotificationSpecificFields SMS_DATA_FIELDS = NotificationSpecificFields.builder()
+            .eventType("event") // fixed for SMS as well
+            .build();
+
     private final NotificationTransportService transport;
 
     @Value("${shortage.templates.sms.name}")
     private String smsRoute;
 
-    public void sendSms(SmsNotificationRequest request) {
+    public boolean sendSms(SmsNotificationRequest request) {
+        OutboundNotification sms = composeSms(request);
+
+        log.debug("Publishing SMS notification request: {}", sms.getRequest());
 
-        var req = NotificationMessageRequest.<Object>builder()
+        return transport.send(sms.getRoute(), sms.getRequest());
+    }
+
+    /**
+     * Builds the message {@link #sendSms} would publish, for the notification outbox.
+     */
+    public OutboundNotification composeSms(SmsNotificationRequest request) {
+        var req = NotificationMessageRequest.<Map<String, Object>>builder()
                 .receivers(request.getReceivers())
                 .sender("9319409279") // not required for SMS unless your infra demands
                 .subject("Shortage_Alert") // irrelevant for SMS
                 .templateName(request.getTemplateName())
                 .templateDataJson(request.getTemplateDataJson())
-                .dataFields(NotificationSpecificFields.builder()
-                        .eventType("event") // fixed for SMS as well
-                        .build())
+                .receiverTemplateData(request.getReceiverTemplateDataJson())
+                .dataFields(SMS_DATA_FIELDS)
                 .build();
 
-        log.info("Publishing SMS notification request: {}", req);
-
-        transport.send(smsRoute, req);
+        return new OutboundNotification(NotificationChannel.SMS, smsRoute, req);
     }
 }
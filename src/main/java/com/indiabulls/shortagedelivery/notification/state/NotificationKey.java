@@ -0,0 +1,17 @@
+package com.indiabulls.shortagedelivery.notification.state;
+
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import lombok.Data;
+
+/**
+ * Identifies one shortage notification: which client was told about which shortage, how and
+ * with which template.
+ */
+@Data
+public class NotificationKey {
+    private final String clntId;
+    private final String securitySymbol;
+    private final String settlementNo;
+    private final NotificationChannel channel;
+    private final String template;
+}
@@ -0,0 +1,185 @@
+package com.indiabulls.shortagedelivery.notification.state;
+
+import com.indiabulls.shortagedelivery.notification.fanout.NotificationChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which shortage and auction notifications were sent, with the quantity they reported,
+ * so repeated scheduler runs only notify new or changed shortages and settlements.
+ * <p>
+ * A notification counts as sent once it is committed to the notification outbox, which delivers it;
+ * its state is written in the same transaction, so the state survives restarts and never runs
+ * ahead of the outbox. The state keeps the id of the outbox row, and is dropped again if the
+ * {@link com.indiabulls.shortagedelivery.notification.outbox.OutboxRelay} gives up on that row, so
+ * the next run notifies it again. Lookups are served from an in-memory index loaded from
+ * focus.notification_state on first use. Entries older than
+ * {@code shortage.notification-state.retention-days} are dropped at load. If the table cannot be
+ * read, the store logs the error and falls back to notifying, as before the store existed, rather
+ * than dropping notifications.
+ */
+@Slf4j
+@Component
+public class NotificationStateStore {
+
+    private static final String PRUNE_SQL =
+            "DELETE FROM focus.notification_state WHERE notified_at < now() - make_interval(days => ?)";
+
+    private static final String LOAD_SQL =
+            "SELECT clnt_id, security_symbol, settlement_no, channel, template, short_quantity " +
+                    "FROM focus.notification_state";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO focus.notification_state " +
+                    "(clnt_id, security_symbol, settlement_no, channel, template, short_quantity, outbox_id, notified_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, now()) " +
+                    "ON CONFLICT (clnt_id, security_symbol, settlement_no, channel, template) " +
+                    "DO UPDATE SET short_quantity = EXCLUDED.short_quantity, outbox_id = EXCLUDED.outbox_id, " +
+                    "notified_at = EXCLUDED.notified_at";
+
+    private static final String FORGET_FAILED_SQL =
+            "DELETE FROM focus.notification_state s USING focus.notification_outbox o " +
+                    "WHERE s.outbox_id = o.id AND o.id = ANY(?) AND o.status = 'FAILED' " +
+                    "RETURNING s.clnt_id, s.security_symbol, s.settlement_no, s.channel, s.template, s.short_quantity";
+
+    private final DataSource dataSource;
+    private final int retentionDays;
+    private final Map<NotificationKey, Integer> notified = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public NotificationStateStore(DataSource dataSource,
+                                  @Value("${shortage.notification-state.retention-days:7}") int retentionDays) {
+        this.dataSource = dataSource;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * True unless the same notification was already sent for the same quantity.
+     */
+    public boolean needsNotification(NotificationKey key, int shortQuantity) {
+        if (!ensureLoaded()) {
+            return true;
+        }
+        Integer last = notified.get(key);
+        return last == null || last != shortQuantity;
+    }
+
+    /**
+     * Writes notifications, keyed to the quantity they reported, on the caller's connection so they
+     * commit together with the outbox rows that carry them ({@code outboxIds}). Call
+     * {@link #remember} after the commit.
+     */
+    public void persist(Connection conn, Map<NotificationKey, Integer> queued, Map<NotificationKey, Long> outboxIds)
+            throws SQLException {
+        if (queued.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+            for (Map.Entry<NotificationKey, Integer> entry : queued.entrySet()) {
+                NotificationKey key = entry.getKey();
+                ps.setString(1, key.getClntId());
+                ps.setString(2, key.getSecuritySymbol());
+                ps.setString(3, key.getSettlementNo());
+                ps.setString(4, key.getChannel().name());
+                ps.setString(5, key.getTemplate());
+                ps.setInt(6, entry.getValue());
+                ps.setObject(7, outboxIds.get(key), Types.BIGINT);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Adds committed notifications to the in-memory index. */
+    public void remember(Map<NotificationKey, Integer> queued) {
+        notified.putAll(queued);
+    }
+
+    /**
+     * Drops the state of the notifications carried by those of {@code outboxIds} that are FAILED,
+     * so they are notified again.
+     *
+     * @return the number of notifications forgotten
+     */
+    public int forgetFailed(Connection conn, List<Long> outboxIds) throws SQLException {
+        if (outboxIds.isEmpty()) {
+            return 0;
+        }
+        int forgotten = 0;
+        try (PreparedStatement ps = conn.prepareStatement(FORGET_FAILED_SQL)) {
+            ps.setArray(1, conn.createArrayOf("bigint", outboxIds.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // Only if no newer notification has replaced it in the meantime
+                    notified.remove(key(rs), rs.getInt("short_quantity"));
+                    forgotten++;
+                }
+            }
+        }
+        return forgotten;
+    }
+
+    public int size() {
+        return notified.size();
+    }
+
+    /** Forgets all state, in memory and in the table, so the next run notifies everything again. */
+    public synchronized void clear() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM focus.notification_state")) {
+            ps.executeUpdate();
+        }
+        notified.clear();
+        loaded = true;
+    }
+
+    /** @return false if the state could not be loaded */
+    private boolean ensureLoaded() {
+        if (loaded) {
+            return true;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return true;
+            }
+            try (Connection conn = dataSource.getConnection()) {
+                try (PreparedStatement ps = conn.prepareStatement(PRUNE_SQL)) {
+                    ps.setInt(1, retentionDays);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(LOAD_SQL);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        notified.put(key(rs), rs.getInt("short_quantity"));
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("Failed to load notification states, notifying all shortages", e);
+                return false;
+            }
+            loaded = true;
+            log.info("Loaded {} notification states", notified.size());
+            return true;
+        }
+    }
+
+    private static NotificationKey key(ResultSet rs) throws SQLException {
+        return new NotificationKey(
+                rs.getString("clnt_id"),
+                rs.getString("security_symbol"),
+                rs.getString("settlement_no"),
+                NotificationChannel.valueOf(rs.getString("channel")),
+                rs.getString("template"));
+    }
+}
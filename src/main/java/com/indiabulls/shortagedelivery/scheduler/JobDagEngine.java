@@ -0,0 +1,338 @@
+package com.indiabulls.shortagedelivery.scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the steps of a job as a dependency graph on a dedicated pool of
+ * {@code shortage.scheduler.workers} threads: a step starts as soon as every step it depends on
+ * has succeeded, so independent branches run in parallel, and is skipped if one of them failed.
+ * <p>
+ * A step name stands for the work it does, so a run never overlaps a run in progress of the same
+ * job or of another job sharing one of its steps (e.g. {@code dpo} on its own and the cycle that
+ * contains it); jobs without steps in common run side by side. {@link #start} refuses such a run,
+ * so an overrunning cycle is never overlapped by the next trigger, and {@link #startOrJoin} hands
+ * an on-demand trigger the run already in progress instead. The last
+ * {@code shortage.scheduler.history-size} runs are kept for {@link #history()}.
+ * <p>
+ * Steps report progress through {@link JobProgress}; a step's ETA assumes it will process as many
+ * rows as in its last successful run.
+ * <p>
+ * Every step and run is timed ({@code shortage.job.step}, {@code shortage.job.run}), and two gauges
+ * let an alert fire when a run overruns its window: {@code shortage.job.active.seconds} (age of the
+ * oldest run in progress, 0 when idle) and {@code shortage.job.last.success} (epoch seconds of the
+ * last fully successful run, per job).
+ */
+@Slf4j
+@Component
+public class JobDagEngine {
+
+    private final ExecutorService pool;
+    private final int historySize;
+    private final Deque<JobRun> history = new ArrayDeque<>();
+    // Run in progress per job; only changed while holding history's lock
+    private final Map<String, JobRun> running = new ConcurrentHashMap<>();
+    private final AtomicLong runIds = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicLong> lastSuccess = new ConcurrentHashMap<>();
+
+    public JobDagEngine(@Value("${shortage.scheduler.workers:4}") int workers,
+                        @Value("${shortage.scheduler.history-size:50}") int historySize,
+                        MeterRegistry meterRegistry) {
+        AtomicInteger threadIds = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "shortage-job-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.historySize = historySize;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("shortage.job.active.seconds", this, JobDagEngine::activeSeconds)
+                .description("Age of the oldest job run in progress, 0 when idle")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts a run of the steps in the background.
+     *
+     * @return the run, updated as it progresses, or empty if a run of the job, or of another job
+     * sharing one of its steps, is in progress
+     * @throws IllegalArgumentException if a step depends on an unknown step or the steps form a cycle
+     */
+    public Optional<JobRun> start(String job, List<JobStep> steps) {
+        List<JobStep> ordered = topologicalOrder(steps);
+        JobRun run;
+        synchronized (history) {
+            JobRun inProgress = overlapping(job, steps);
+            if (inProgress != null) {
+                log.warn("Job {} not started: job {} #{} is still in progress", job, inProgress.getJob(),
+                        inProgress.getId());
+                return Optional.empty();
+            }
+            run = register(job, steps);
+        }
+        launch(run, ordered);
+        return Optional.of(run);
+    }
+
+    /**
+     * Starts a run of the steps in the background, or returns the run in progress of the same job or
+     * of another job sharing one of its steps, so concurrent triggers of the same work collapse into
+     * one run.
+     *
+     * @throws IllegalArgumentException if a step depends on an unknown step or the steps form a cycle
+     */
+    public JobRun startOrJoin(String job, List<JobStep> steps) {
+        List<JobStep> ordered = topologicalOrder(steps);
+        JobRun run;
+        synchronized (history) {
+            JobRun inProgress = overlapping(job, steps);
+            if (inProgress != null) {
+                return inProgress;
+            }
+            run = register(job, steps);
+        }
+        launch(run, ordered);
+        return run;
+    }
+
+    /** The run of {@code job} in progress, if any. */
+    public Optional<JobRun> currentRun(String job) {
+        return Optional.ofNullable(running.get(job));
+    }
+
+    /**
+     * The run in progress of {@code job}, or of another job with a step of the same name, or null;
+     * call holding history's lock.
+     */
+    private JobRun overlapping(String job, List<JobStep> steps) {
+        JobRun run = running.get(job);
+        if (run != null) {
+            return run;
+        }
+        for (JobRun other : running.values()) {
+            for (JobStep step : steps) {
+                if (other.getSteps().containsKey(step.getName())) {
+                    return other;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Creates the run and makes it the one in progress for its job; call holding history's lock. */
+    private JobRun register(String job, List<JobStep> steps) {
+        JobRun run = new JobRun(runIds.incrementAndGet(), job);
+        for (JobStep step : steps) {
+            StepResult result = new StepResult(step.getName(), step.getDependsOn());
+            result.setExpectedRows(lastRows(step.getName()));
+            run.getSteps().put(step.getName(), result);
+        }
+        history.addFirst(run);
+        while (history.size() > historySize) {
+            history.removeLast();
+        }
+        running.put(job, run);
+        return run;
+    }
+
+    private void launch(JobRun run, List<JobStep> ordered) {
+        log.info("Job {} #{} started", run.getJob(), run.getId());
+
+        try {
+            Map<String, CompletableFuture<StepStatus>> futures = new HashMap<>();
+            for (JobStep step : ordered) {
+                CompletableFuture<?>[] dependencies = step.getDependsOn().stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(step.getName(), CompletableFuture.allOf(dependencies)
+                        .thenApplyAsync(ignored -> execute(run, step), pool));
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                    .whenComplete((ignored, error) -> finish(run));
+        } catch (RuntimeException e) {
+            // e.g. the pool was shut down
+            finish(run);
+            throw e;
+        }
+    }
+
+    /** Rows processed by the step in its last successful run that reported any, 0 if none did. */
+    private long lastRows(String step) {
+        for (JobRun run : history) {
+            StepResult result = run.getSteps().get(step);
+            if (result != null && result.getStatus() == StepStatus.SUCCEEDED && result.getRowsProcessed() > 0) {
+                return result.getRowsProcessed();
+            }
+        }
+        return 0;
+    }
+
+    /** True while a run of any job is in progress. */
+    public boolean isRunning() {
+        return !running.isEmpty();
+    }
+
+    /** Recent runs, newest first. */
+    public List<JobRun> history() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    public Optional<JobRun> findRun(long id) {
+        synchronized (history) {
+            return history.stream().filter(run -> run.getId() == id).findFirst();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private StepStatus execute(JobRun run, JobStep step) {
+        StepResult result = run.getSteps().get(step.getName());
+        for (String dependency : step.getDependsOn()) {
+            StepStatus status = run.getSteps().get(dependency).getStatus();
+            if (status != StepStatus.SUCCEEDED) {
+                result.setMessage("Skipped: " + dependency + " " + status);
+                result.setStatus(StepStatus.SKIPPED);
+                log.warn("Job {} #{} step {} skipped: {} {}", run.getJob(), run.getId(), step.getName(), dependency, status);
+                return StepStatus.SKIPPED;
+            }
+        }
+
+        result.setStartedAt(Instant.now());
+        result.setStatus(StepStatus.RUNNING);
+        long start = System.nanoTime();
+        StepStatus status;
+        JobProgress.bind(result);
+        try {
+            String message = step.getAction().get();
+            result.setMessage(message);
+            status = message != null && message.startsWith("Error") ? StepStatus.FAILED : StepStatus.SUCCEEDED;
+        } catch (RuntimeException e) {
+            log.error("Job {} #{} step {} failed", run.getJob(), run.getId(), step.getName(), e);
+            result.setMessage("Error: " + e.getMessage());
+            status = StepStatus.FAILED;
+        } finally {
+            JobProgress.unbind();
+            result.setStage(null);
+        }
+        long nanos = System.nanoTime() - start;
+        result.setDurationMillis(nanos / 1_000_000);
+        result.setStatus(status);
+        Timer.builder("shortage.job.step")
+                .tag("job", run.getJob())
+                .tag("step", step.getName())
+                .tag("status", status.name())
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        log.info("Job {} #{} step {} {} in {} ms: {}", run.getJob(), run.getId(), step.getName(), status,
+                result.getDurationMillis(), result.getMessage());
+        return status;
+    }
+
+    private void finish(JobRun run) {
+        Instant finishedAt = Instant.now();
+        run.setTotalMillis(finishedAt.toEpochMilli() - run.getStartedAt().toEpochMilli());
+        run.setFinishedAt(finishedAt);
+        boolean succeeded = run.isSucceeded();
+        Timer.builder("shortage.job.run")
+                .tag("job", run.getJob())
+                .tag("outcome", succeeded ? "success" : "failure")
+                .register(meterRegistry)
+                .record(run.getTotalMillis(), TimeUnit.MILLISECONDS);
+        if (succeeded) {
+            lastSuccess.computeIfAbsent(run.getJob(), this::registerLastSuccess).set(finishedAt.getEpochSecond());
+        }
+        synchronized (history) {
+            running.remove(run.getJob(), run);
+        }
+        log.info(run.summary());
+        run.getCompletion().complete(run);
+    }
+
+    private double activeSeconds() {
+        long now = System.currentTimeMillis();
+        return running.values().stream()
+                .mapToLong(run -> now - run.getStartedAt().toEpochMilli())
+                .max()
+                .orElse(0) / 1000.0;
+    }
+
+    private AtomicLong registerLastSuccess(String job) {
+        AtomicLong epochSeconds = new AtomicLong();
+        Gauge.builder("shortage.job.last.success", epochSeconds, AtomicLong::get)
+                .description("Finish time of the last fully successful run, in epoch seconds")
+                .baseUnit("seconds")
+                .tag("job", job)
+                .register(meterRegistry);
+        return epochSeconds;
+    }
+
+    /** Orders steps so every step comes after the steps it depends on. */
+    private static List<JobStep> topologicalOrder(List<JobStep> steps) {
+        Map<String, JobStep> byName = new LinkedHashMap<>();
+        for (JobStep step : steps) {
+            if (byName.put(step.getName(), step) != null) {
+                throw new IllegalArgumentException("Duplicate step " + step.getName());
+            }
+        }
+        for (JobStep step : steps) {
+            for (String dependency : step.getDependsOn()) {
+                if (!byName.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Step " + step.getName() + " depends on unknown step " + dependency);
+                }
+            }
+        }
+
+        List<JobStep> ordered = new ArrayList<>(steps.size());
+        Map<String, Boolean> visiting = new HashMap<>();
+        for (JobStep step : steps) {
+            visit(step, byName, visiting, ordered);
+        }
+        return ordered;
+    }
+
+    private static void visit(JobStep step, Map<String, JobStep> byName, Map<String, Boolean> visiting,
+                              List<JobStep> ordered) {
+        Boolean state = visiting.get(step.getName());
+        if (Boolean.FALSE.equals(state)) {
+            return;
+        }
+        if (Boolean.TRUE.equals(state)) {
+            throw new IllegalArgumentException("Dependency cycle through step " + step.getName());
+        }
+        visiting.put(step.getName(), Boolean.TRUE);
+        for (String dependency : step.getDependsOn()) {
+            visit(byName.get(dependency), byName, visiting, ordered);
+        }
+        visiting.put(step.getName(), Boolean.FALSE);
+        ordered.add(step);
+    }
+}
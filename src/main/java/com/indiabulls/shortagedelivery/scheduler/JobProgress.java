@@ -0,0 +1,38 @@
+package com.indiabulls.shortagedelivery.scheduler;
+
+/**
+ * Lets the code of a running step report how far it has got, for {@code GET /jobs/runs/{id}}.
+ * The {@link JobDagEngine} binds the step to the thread running it, so only that thread reports;
+ * called anywhere else, e.g. from a request thread or a pipeline's helper threads, these do nothing.
+ */
+public final class JobProgress {
+
+    private static final ThreadLocal<StepResult> CURRENT = new ThreadLocal<>();
+
+    private JobProgress() {
+    }
+
+    /** Adds rows the current step has processed. */
+    public static void rows(long rows) {
+        StepResult step = CURRENT.get();
+        if (step != null) {
+            step.addRows(rows);
+        }
+    }
+
+    /** Names what the current step is doing now, e.g. "merging". */
+    public static void stage(String stage) {
+        StepResult step = CURRENT.get();
+        if (step != null) {
+            step.setStage(stage);
+        }
+    }
+
+    static void bind(StepResult step) {
+        CURRENT.set(step);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,62 @@
+package com.indiabulls.shortagedelivery.scheduler;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * One execution of a job by the {@link JobDagEngine}; updated while the job runs.
+ */
+@Data
+public class JobRun {
+    private final long id;
+    private final String job;
+    private final Instant startedAt = Instant.now();
+    private volatile Instant finishedAt;
+    private volatile long totalMillis;
+    /** Step results in declaration order. */
+    private final Map<String, StepResult> steps = new LinkedHashMap<>();
+
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final CompletableFuture<JobRun> completion = new CompletableFuture<>();
+
+    public boolean isDone() {
+        return finishedAt != null;
+    }
+
+    /** The steps in progress, i.e. the run's current stage. */
+    public List<String> getRunningSteps() {
+        return steps.values().stream()
+                .filter(step -> step.getStatus() == StepStatus.RUNNING)
+                .map(StepResult::getName)
+                .collect(Collectors.toList());
+    }
+
+    /** True once done, if every step succeeded. */
+    public boolean isSucceeded() {
+        return isDone() && steps.values().stream().allMatch(step -> step.getStatus() == StepStatus.SUCCEEDED);
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("Job ").append(job).append(" #").append(id);
+        if (isDone()) {
+            sb.append(isSucceeded() ? " succeeded" : " finished with failures").append(" in ")
+                    .append(totalMillis).append(" ms");
+        } else {
+            sb.append(" running");
+        }
+        steps.values().forEach(step -> sb.append("; ").append(step.getName()).append(": ")
+                .append(step.getStatus()).append(" (").append(step.getDurationMillis()).append(" ms)"));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package com.indiabulls.shortagedelivery.scheduler;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * One step of a scheduled job: a named action returning a status message, and the steps that
+ * must succeed before it runs. A message starting with "Error" marks the step as failed.
+ */
+@Getter
+public class JobStep {
+
+    private final String name;
+    private final List<String> dependsOn;
+    private final Supplier<String> action;
+
+    public JobStep(String name, List<String> dependsOn, Supplier<String> action) {
+        this.name = name;
+        this.dependsOn = dependsOn;
+        this.action = action;
+    }
+
+    public static JobStep of(String name, Supplier<String> action, String... dependsOn) {
+        return new JobStep(name, Arrays.asList(dependsOn), action);
+    }
+}
@@ -1,42 +1,89 @@
 package com.indiabulls.shortagedelivery.scheduler;
 
 import com.indiabulls.shortagedelivery.ftp.FtpCsvToPostgresService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+@Slf4j
 @Component
 public class ShortageDeliveryScheduler {
 
+    static final String SHORTAGE_CYCLE = "shortage-cycle";
+
     private final FtpCsvToPostgresService ftpCsvToPostgresService;
+    private final JobDagEngine jobDagEngine;
 
     @Value("${shortagedelivery.scheduler.cron}")
     private String cronExpression;
 
-    public ShortageDeliveryScheduler(FtpCsvToPostgresService ftpCsvToPostgresService) {
+    public ShortageDeliveryScheduler(FtpCsvToPostgresService ftpCsvToPostgresService, JobDagEngine jobDagEngine) {
         this.ftpCsvToPostgresService = ftpCsvToPostgresService;
+        this.jobDagEngine = jobDagEngine;
     }
 
     /**
-     * Runs according to cron expression from application.properties
+     * Runs according to cron expression from application.properties. The cycle runs on the job
+     * engine's pool; a trigger that arrives while the previous cycle is still running is skipped.
      */
     @Scheduled(cron = "${shortagedelivery.scheduler.cron}")
     public void runScheduledJobs() {
-        System.out.println("⏳ Running FTP shortage jobs...");
-
-        // Step 1: Load Delivery DPO file
-        String dpoResult = ftpCsvToPostgresService.loadDeliveryDpoFile();
-        System.out.println(dpoResult);
+        log.info("Running FTP shortage jobs");
 
-        // Step 2: Compare SHRT file
-        String shrtResult = ftpCsvToPostgresService.loadShrtFileAndCompare();
-        System.out.println(shrtResult);
+        if (!jobDagEngine.start(SHORTAGE_CYCLE, shortageCycle()).isPresent()) {
+            log.info("Previous shortage cycle is still running, skipping this trigger");
+        }
+    }
 
-        // Step 3: Notify shortage clients
-        ftpCsvToPostgresService.notifyClientsWithShortages();
+    /**
+     * The steps of a job that can be triggered on demand: the whole {@code shortage-cycle}, or one
+     * of its {@code dpo}, {@code shrt}, {@code notify} and {@code auction} steps on its own (the
+     * shortage notifications with the contact cache warm-up they rely on).
+     */
+    public Optional<List<JobStep>> jobSteps(String job) {
+        switch (job) {
+            case SHORTAGE_CYCLE:
+                return Optional.of(shortageCycle());
+            case "dpo":
+                return Optional.of(Collections.singletonList(
+                        JobStep.of("dpo", ftpCsvToPostgresService::loadDeliveryDpoFile)));
+            case "shrt":
+                return Optional.of(Collections.singletonList(
+                        JobStep.of("shrt", ftpCsvToPostgresService::loadShrtFileAndCompare)));
+            case "notify":
+                return Optional.of(Arrays.asList(
+                        JobStep.of("contacts", ftpCsvToPostgresService::warmContactCache),
+                        JobStep.of("notify", ftpCsvToPostgresService::notifyClientsWithShortages, "contacts")));
+            case "auction":
+                return Optional.of(Collections.singletonList(
+                        JobStep.of("auction", ftpCsvToPostgresService::loadAuctionFileAndNotify)));
+            default:
+                return Optional.empty();
+        }
+    }
 
-        // Step 4: Auction settlement notifications
-        String auctionResult = ftpCsvToPostgresService.loadAuctionFileAndNotify();
-        System.out.println(auctionResult);
+    /**
+     * DeliveryDPO → SHRT → notify; the auction notifications don't depend on the DPO load or the
+     * reconciliation and run alongside them. The cache warm-up reads the clients the reconciliation
+     * found short, so it runs between the reconciliation and the shortage notifications.
+     */
+    List<JobStep> shortageCycle() {
+        return Arrays.asList(
+                // Step 1: Load Delivery DPO file
+                JobStep.of("dpo", ftpCsvToPostgresService::loadDeliveryDpoFile),
+                // Step 2: Compare SHRT file
+                JobStep.of("shrt", ftpCsvToPostgresService::loadShrtFileAndCompare, "dpo"),
+                // Load the contacts of this run's shortage clients in one query
+                JobStep.of("contacts", ftpCsvToPostgresService::warmContactCache, "shrt"),
+                // Step 3: Queue notifications for shortage clients (the outbox relay publishes them)
+                JobStep.of("notify", ftpCsvToPostgresService::notifyClientsWithShortages, "shrt", "contacts"),
+                // Step 4: Auction settlement notifications
+                JobStep.of("auction", ftpCsvToPostgresService::loadAuctionFileAndNotify));
     }
 }
@@ -0,0 +1,48 @@
+package com.indiabulls.shortagedelivery.scheduler;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class StepResult {
+    private final String name;
+    private final List<String> dependsOn;
+    private volatile StepStatus status = StepStatus.PENDING;
+    private volatile Instant startedAt;
+    private volatile long durationMillis;
+    /** The step's status message, or the error that stopped it. */
+    private volatile String message;
+    /** What the running step is doing now, as reported through {@link JobProgress}. */
+    private volatile String stage;
+    /** Rows processed so far; only the step's own thread adds to it. */
+    private volatile long rowsProcessed;
+    /** Rows the last successful run of this step processed, 0 if unknown; the basis of the ETA. */
+    private volatile long expectedRows;
+
+    void addRows(long rows) {
+        rowsProcessed += rows;
+    }
+
+    /** Rows per second so far, or over the whole step once it has finished. */
+    public double getRowsPerSecond() {
+        long millis = status == StepStatus.RUNNING && startedAt != null
+                ? System.currentTimeMillis() - startedAt.toEpochMilli()
+                : durationMillis;
+        return millis > 0 ? rowsProcessed * 1000.0 / millis : 0;
+    }
+
+    /**
+     * Seconds until the step has processed as many rows as its last successful run at the current
+     * rate; null when not running, without a previous run, or past that many rows.
+     */
+    public Long getEtaSeconds() {
+        long remaining = expectedRows - rowsProcessed;
+        double rate = getRowsPerSecond();
+        if (status != StepStatus.RUNNING || expectedRows == 0 || remaining <= 0 || rate == 0) {
+            return null;
+        }
+        return (long) Math.ceil(remaining / rate);
+    }
+}
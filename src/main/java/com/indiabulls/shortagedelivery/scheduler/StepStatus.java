@@ -0,0 +1,10 @@
+package com.indiabulls.shortagedelivery.scheduler;
+
+public enum StepStatus {
+    PENDING,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    /** Not run because a step it depends on did not succeed. */
+    SKIPPED
+}
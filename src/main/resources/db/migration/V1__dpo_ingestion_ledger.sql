@@ -0,0 +1,45 @@
+-- DeliveryDPO files already loaded, so an unchanged file is not downloaded again
+CREATE TABLE IF NOT EXISTS focus.dpo_ingestion_ledger (
+    file_name   text        PRIMARY KEY,
+    file_size   bigint      NOT NULL,
+    modified_at timestamptz,
+    checksum    text        NOT NULL,
+    row_count   bigint      NOT NULL,
+    loaded_at   timestamptz NOT NULL DEFAULT now()
+);
+
+-- Every scheduler run used to insert the whole file again, leaving exact copies of each row; keep
+-- one of each. A row repeated within one file is indistinguishable from such a copy and is lost
+DELETE FROM focus.short_delivery
+WHERE ctid IN (
+    SELECT ctid
+    FROM (SELECT ctid, row_number() OVER (PARTITION BY t ORDER BY ctid) AS copy
+          FROM focus.short_delivery t) copies
+    WHERE copy > 1
+);
+
+-- Rows of the same key that still differ are separate deliveries, which used to add up; keep one
+-- row per natural key with the sum of their quantities
+WITH duplicates AS (
+    SELECT settlement_no, clnt_id, isin,
+           (array_agg(ctid ORDER BY ctid))[1] AS kept,
+           SUM(qty_received_t1) AS qty_received_t1
+    FROM focus.short_delivery
+    WHERE settlement_no IS NOT NULL AND clnt_id IS NOT NULL AND isin IS NOT NULL
+    GROUP BY settlement_no, clnt_id, isin
+    HAVING count(*) > 1
+), removed AS (
+    DELETE FROM focus.short_delivery a
+    USING duplicates d
+    WHERE a.settlement_no = d.settlement_no
+      AND a.clnt_id = d.clnt_id
+      AND a.isin = d.isin
+      AND a.ctid <> d.kept
+)
+UPDATE focus.short_delivery k
+SET qty_received_t1 = d.qty_received_t1
+FROM duplicates d
+WHERE k.ctid = d.kept;
+
+CREATE UNIQUE INDEX IF NOT EXISTS short_delivery_natural_key
+    ON focus.short_delivery (settlement_no, clnt_id, isin);
@@ -0,0 +1,13 @@
+-- trn_qty totals per settlement / ISIN / client, refreshed for the settlements of each DPO load
+CREATE TABLE IF NOT EXISTS focus.trxn_qty_summary (
+    settlement_no text        NOT NULL,
+    isin          text        NOT NULL,   -- UPPER(trxn_table_class.isin)
+    clnt_id       text        NOT NULL,   -- party_cd without the leading 'C'
+    total_trn_qty bigint      NOT NULL,
+    refreshed_at  timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (settlement_no, isin, clnt_id)
+);
+
+-- Lets the refresh read only the settlements being loaded
+CREATE INDEX IF NOT EXISTS trxn_table_class_settlement_no
+    ON focus.trxn_table_class (settlement_no);
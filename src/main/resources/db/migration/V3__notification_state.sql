@@ -0,0 +1,14 @@
+-- Last shortage notification sent per client / symbol / settlement / channel / template
+CREATE TABLE IF NOT EXISTS focus.notification_state (
+    clnt_id         text        NOT NULL,
+    security_symbol text        NOT NULL,
+    settlement_no   text        NOT NULL,
+    channel         text        NOT NULL,
+    template        text        NOT NULL,
+    short_quantity  integer     NOT NULL,
+    notified_at     timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (clnt_id, security_symbol, settlement_no, channel, template)
+);
+
+CREATE INDEX IF NOT EXISTS notification_state_notified_at
+    ON focus.notification_state (notified_at);
@@ -0,0 +1,24 @@
+-- Notifications written in the same transaction as the shortage updates, published by the outbox relay
+CREATE TABLE IF NOT EXISTS focus.notification_outbox (
+    id              bigserial   PRIMARY KEY,
+    channel         text        NOT NULL,
+    route           text        NOT NULL,
+    payload         jsonb       NOT NULL,
+    -- PENDING -> SENDING -> SENT, or back to PENDING for a retry, FAILED once retries are used up
+    status          text        NOT NULL DEFAULT 'PENDING',
+    attempts        integer     NOT NULL DEFAULT 0,
+    next_attempt_at timestamptz NOT NULL DEFAULT now(),
+    claimed_at      timestamptz,
+    sent_at         timestamptz,
+    last_error      text,
+    created_at      timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS notification_outbox_pending
+    ON focus.notification_outbox (next_attempt_at, id) WHERE status = 'PENDING';
+
+CREATE INDEX IF NOT EXISTS notification_outbox_sending
+    ON focus.notification_outbox (claimed_at) WHERE status = 'SENDING';
+
+CREATE INDEX IF NOT EXISTS notification_outbox_sent_at
+    ON focus.notification_outbox (sent_at) WHERE status = 'SENT';
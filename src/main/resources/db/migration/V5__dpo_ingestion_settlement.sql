@@ -0,0 +1,6 @@
+-- Settlement numbers of each ledger entry, so totals can be refreshed for a file that is not loaded again
+CREATE TABLE IF NOT EXISTS focus.dpo_ingestion_settlement (
+    file_name     text NOT NULL REFERENCES focus.dpo_ingestion_ledger (file_name) ON DELETE CASCADE,
+    settlement_no text NOT NULL,
+    PRIMARY KEY (file_name, settlement_no)
+);
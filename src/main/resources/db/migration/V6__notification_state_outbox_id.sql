@@ -0,0 +1,5 @@
+-- Outbox row that carries each notification, so the state can be dropped when the relay gives up on it
+ALTER TABLE focus.notification_state ADD COLUMN IF NOT EXISTS outbox_id bigint;
+
+CREATE INDEX IF NOT EXISTS notification_state_outbox_id
+    ON focus.notification_state (outbox_id);
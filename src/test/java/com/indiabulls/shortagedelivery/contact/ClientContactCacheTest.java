@@ -0,0 +1,64 @@
+package com.indiabulls.shortagedelivery.contact;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientContactCacheTest {
+
+    @Test
+    void servesLoadedContactsAndRemembersClientsWithoutOne() {
+        ClientContactCache cache = new ClientContactCache(100, Duration.ofHours(1), Duration.ofMinutes(5), Ticker.systemTicker());
+        Map<String, ClientContact> found = new HashMap<>();
+
+        Set<String> missing = cache.lookup(Arrays.asList("100", "101"), found);
+        assertEquals(2, missing.size());
+        assertTrue(found.isEmpty());
+
+        ClientContact contact = new ClientContact("100", "a@example.com", "9000000000");
+        cache.putAll(missing, Collections.singletonMap("100", contact));
+
+        missing = cache.lookup(Arrays.asList("100", "101"), found);
+        assertTrue(missing.isEmpty(), "client 101 is cached as having no contact");
+        assertEquals(Collections.singletonMap("100", contact), found);
+        assertEquals(2, cache.stats().hitCount());
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    void invalidateForcesReload() {
+        ClientContactCache cache = new ClientContactCache(100, Duration.ofHours(1), Duration.ofMinutes(5), Ticker.systemTicker());
+        cache.put(new ClientContact("100", "a@example.com", "9000000000"));
+
+        cache.invalidate("100");
+
+        Set<String> missing = cache.lookup(Collections.singletonList("100"), new HashMap<>());
+        assertEquals(Collections.singleton("100"), missing);
+    }
+
+    @Test
+    void forgetsClientsWithoutAContactLongBeforeTheContacts() {
+        AtomicLong nanos = new AtomicLong();
+        ClientContactCache cache = new ClientContactCache(100, Duration.ofHours(8), Duration.ofMinutes(5), nanos::get);
+        ClientContact contact = new ClientContact("100", "a@example.com", "9000000000");
+        cache.putAll(Arrays.asList("100", "101"), Collections.singletonMap("100", contact));
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(6));
+
+        Map<String, ClientContact> found = new HashMap<>();
+        Set<String> missing = cache.lookup(Arrays.asList("100", "101"), found);
+        assertEquals(Collections.singleton("101"), missing);
+        assertEquals(Collections.singletonMap("100", contact), found);
+    }
+}
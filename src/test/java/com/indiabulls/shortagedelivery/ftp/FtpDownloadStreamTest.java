@@ -0,0 +1,159 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.Listener;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FtpDownloadStreamTest {
+
+    private static final String FILE_NAME = "DeliveryDpo_NCL_CM_EquityT1_CM_08756_synthetic.csv.gz";
+    private static final int ROWS = 7_000_000;
+
+    @TempDir
+    static Path homeDir;
+
+    private static FtpServer server;
+    private static int port;
+    private static long uncompressedBytes;
+    private static long compressedBytes;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        uncompressedBytes = writeSyntheticDpoFile(homeDir.resolve(FILE_NAME));
+        compressedBytes = Files.size(homeDir.resolve(FILE_NAME));
+
+        BaseUser user = new BaseUser();
+        user.setName("tester");
+        user.setPassword("secret");
+        user.setHomeDirectory(homeDir.toString());
+        UserManager userManager = new PropertiesUserManagerFactory().createUserManager();
+        userManager.save(user);
+
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(0);
+        Listener listener = listenerFactory.createListener();
+
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        serverFactory.addListener("default", listener);
+        serverFactory.setUserManager(userManager);
+        server = serverFactory.createServer();
+        server.start();
+        port = listener.getPort();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void parsesWhileDownloadingAndLeavesClientReusable() throws Exception {
+        assertTrue(uncompressedBytes > 300L * 1024 * 1024, "synthetic file should be several hundred MB");
+
+        FTPClient ftpClient = connect();
+        try {
+            long rows = 0;
+            long transferredAtFirstRow = -1;
+            try (FtpDownloadStream download = FtpDownloadStream.open(ftpClient, "/" + FILE_NAME);
+                 BufferedReader reader = download.reader()) {
+                assertEquals("SctiesSttlmTxId,ClntId,QtyORShrtQty,TckrSymb,ISIN", reader.readLine());
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (rows++ == 0) {
+                        transferredAtFirstRow = download.bytesTransferred();
+                    }
+                    assertEquals(5, line.split(",", -1).length);
+                }
+                assertEquals(compressedBytes, download.bytesTransferred());
+            }
+
+            assertEquals(ROWS, rows);
+            // Only the first buffers had arrived when the first row was parsed
+            assertTrue(transferredAtFirstRow <= 4L * FtpDownloadStream.BUFFER_SIZE,
+                    "first row parsed after " + transferredAtFirstRow + " of " + compressedBytes + " bytes");
+
+            // completePendingCommand() ran, so the control connection accepts the next command
+            assertTrue(ftpClient.sendNoOp());
+        } finally {
+            ftpClient.logout();
+            ftpClient.disconnect();
+        }
+    }
+
+    @Test
+    void closingEarlyAbortsTransferWithoutError() throws Exception {
+        FTPClient ftpClient = connect();
+        try {
+            try (FtpDownloadStream download = FtpDownloadStream.open(ftpClient, "/" + FILE_NAME);
+                 BufferedReader reader = download.reader()) {
+                reader.readLine();
+                assertTrue(download.bytesTransferred() < compressedBytes);
+            }
+            assertTrue(ftpClient.sendNoOp());
+        } finally {
+            ftpClient.logout();
+            ftpClient.disconnect();
+        }
+    }
+
+    private static FTPClient connect() throws IOException {
+        FTPClient ftpClient = new FTPClient();
+        ftpClient.connect("localhost", port);
+        assertTrue(ftpClient.login("tester", "secret"));
+        ftpClient.enterLocalPassiveMode();
+        ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+        return ftpClient;
+    }
+
+    private static long writeSyntheticDpoFile(Path file) throws IOException {
+        long bytes = 0;
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file), 1 << 16) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            String header = "SctiesSttlmTxId,ClntId,QtyORShrtQty,TckrSymb,ISIN\n";
+            writer.write(header);
+            bytes += header.length();
+            StringBuilder row = new StringBuilder(96);
+            for (int i = 0; i < ROWS; i++) {
+                row.setLength(0);
+                row.append("2025").append(100000000 + i).append(',')
+                        .append(10000000 + (i % 900000) * 7919L % 900000).append(',')
+                        .append((i * 31) % 5000 + 1).append(',')
+                        .append("SYM").append(i % 1800).append(',')
+                        .append("INE").append(100000000 + (i % 1800) * 37).append('\n');
+                writer.append(row);
+                bytes += row.length();
+            }
+        }
+        return bytes;
+    }
+}
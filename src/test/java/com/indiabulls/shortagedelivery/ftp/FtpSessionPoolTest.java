@@ -0,0 +1,168 @@
+package com.indiabulls.shortagedelivery.ftp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.Listener;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FtpSessionPoolTest {
+
+    @TempDir
+    static Path homeDir;
+
+    private static FtpServer server;
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        Files.createDirectories(homeDir.resolve("stocks"));
+        writeGzip(homeDir.resolve("stocks/NCL_C_1.csv.gz"), "Security Symbol\nSYM1\n");
+        writeGzip(homeDir.resolve("stocks/DeliveryDpo_NCL_CM_Auction_1.csv.gz"), "ClntId,QtyORShrtQty,TckrSymb\n1,2,SYM1\n");
+
+        BaseUser user = new BaseUser();
+        user.setName("tester");
+        user.setPassword("secret");
+        user.setHomeDirectory(homeDir.toString());
+        UserManager userManager = new PropertiesUserManagerFactory().createUserManager();
+        userManager.save(user);
+
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(0);
+        Listener listener = listenerFactory.createListener();
+
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        serverFactory.addListener("default", listener);
+        serverFactory.setUserManager(userManager);
+        server = serverFactory.createServer();
+        server.start();
+        port = listener.getPort();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void reusesLoggedInConnectionsAndCachesTheListing() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FtpSessionPool pool = pool(2, meterRegistry);
+        try {
+            for (int run = 0; run < 3; run++) {
+                try (FtpSessionPool.Session ftp = pool.borrow()) {
+                    Optional<FTPFile> shrt = ftp.findFile("/stocks", "NCL_C_.*\\.csv\\.gz");
+                    assertTrue(shrt.isPresent());
+                    try (FtpDownloadStream download = ftp.download("/stocks/" + shrt.get().getName())) {
+                        assertEquals("Security Symbol\nSYM1\n", read(download.inputStream()));
+                    }
+                }
+            }
+
+            assertEquals(1, loginCount(meterRegistry));
+            assertEquals(1, meterRegistry.get("shortage.ftp.listing.cache").tag("result", "miss").counter().count());
+            assertEquals(2, meterRegistry.get("shortage.ftp.listing.cache").tag("result", "hit").counter().count());
+            assertEquals(3, meterRegistry.get("shortage.ftp.transfer.bytes").summary().count());
+            assertEquals(2, pool.idleCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void refreshesACachedListingThatMissesANewFile() throws Exception {
+        FtpSessionPool pool = pool(1, new SimpleMeterRegistry());
+        try (FtpSessionPool.Session ftp = pool.borrow()) {
+            assertFalse(ftp.findFile("/stocks", "DeliveryDpo_NCL_CM_EquityT1_.*\\.csv\\.gz").isPresent());
+            writeGzip(homeDir.resolve("stocks/DeliveryDpo_NCL_CM_EquityT1_CM_08756_1.csv.gz"), "x\n");
+            assertTrue(ftp.findFile("/stocks", "DeliveryDpo_NCL_CM_EquityT1_.*\\.csv\\.gz").isPresent());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void downloadsInParallelOnSeparateConnections() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FtpSessionPool pool = pool(2, meterRegistry);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Both sessions must be borrowed at the same time for either to finish
+            CountDownLatch bothBorrowed = new CountDownLatch(2);
+            List<Future<String>> results = new ArrayList<>();
+            for (String file : new String[]{"NCL_C_1.csv.gz", "DeliveryDpo_NCL_CM_Auction_1.csv.gz"}) {
+                results.add(executor.submit(() -> {
+                    try (FtpSessionPool.Session ftp = pool.borrow();
+                         FtpDownloadStream download = ftp.download("/stocks/" + file)) {
+                        bothBorrowed.countDown();
+                        assertTrue(bothBorrowed.await(10, TimeUnit.SECONDS));
+                        return read(download.inputStream());
+                    }
+                }));
+            }
+
+            assertEquals("Security Symbol\nSYM1\n", results.get(0).get(10, TimeUnit.SECONDS));
+            assertEquals("ClntId,QtyORShrtQty,TckrSymb\n1,2,SYM1\n", results.get(1).get(10, TimeUnit.SECONDS));
+            assertEquals(2, loginCount(meterRegistry));
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+        }
+    }
+
+    private static FtpSessionPool pool(int size, SimpleMeterRegistry meterRegistry) {
+        return new FtpSessionPool("localhost", port, "tester", "secret", size, 5000, 60_000, 1_800_000, 60_000,
+                meterRegistry);
+    }
+
+    private static long loginCount(SimpleMeterRegistry meterRegistry) {
+        return meterRegistry.get("shortage.ftp.operation").tag("op", "login").timer().count();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeGzip(Path file, String content) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvTokenizerTest {
+
+    @Test
+    void resolvesHeaderAndParsesFields() throws IOException {
+        CsvTokenizer csv = tokenizer("SctiesSttlmTxId, ClntId ,QtyORShrtQty\r\n2025000001, 100 , 42\r\n\r\n2025000002,101,-7", 64);
+
+        assertTrue(csv.next());
+        assertEquals(1, csv.indexOf("ClntId"));
+        assertEquals(2, csv.indexOf("QtyORShrtQty"));
+        assertEquals(-1, csv.indexOf("ISIN"));
+
+        assertTrue(csv.next());
+        assertEquals("2025000001", csv.getString(0));
+        assertEquals("100", csv.get(1).toString());
+        assertEquals(42, csv.getInt(2));
+
+        assertTrue(csv.next(), "blank line is skipped");
+        assertEquals("101", csv.getString(1));
+        assertEquals(-7, csv.getInt(2));
+        assertEquals(3, csv.getRowNumber());
+        assertFalse(csv.next());
+    }
+
+    @Test
+    void handlesQuotedFields() throws IOException {
+        CsvTokenizer csv = tokenizer("\"A, Ltd\",\"say \"\"hi\"\"\",\"line\nbreak\",,\"\"\nx,y\n", 64);
+
+        assertTrue(csv.next());
+        assertEquals(5, csv.fieldCount());
+        assertEquals("A, Ltd", csv.getString(0));
+        assertEquals("say \"hi\"", csv.getString(1));
+        assertEquals("line\nbreak", csv.getString(2));
+        assertTrue(csv.isEmpty(3));
+        assertTrue(csv.isEmpty(4));
+
+        assertTrue(csv.next());
+        assertEquals(Arrays.asList("x", "y"), fields(csv));
+        assertFalse(csv.next());
+    }
+
+    @Test
+    void rowsSpanningBufferBoundariesAndLongerThanTheBuffer() throws IOException {
+        StringBuilder data = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String symbol = "SYM" + i + (i % 50 == 0 ? "-with-a-long-suffix-that-is-longer-than-the-buffer" : "");
+            expected.add(symbol);
+            data.append(i).append(',').append(symbol).append('\n');
+        }
+        CsvTokenizer csv = tokenizer(data.toString(), 16);
+
+        List<String> symbols = new ArrayList<>();
+        int row = 0;
+        while (csv.next()) {
+            assertEquals(row++, csv.getInt(0));
+            symbols.add(csv.getString(1));
+        }
+        assertEquals(expected, symbols);
+    }
+
+    @Test
+    void rejectsBadNumbersAndMissingFields() throws IOException {
+        CsvTokenizer csv = tokenizer("12a,,2147483648,-2147483648\n", 64);
+        assertTrue(csv.next());
+
+        assertThrows(NumberFormatException.class, () -> csv.getInt(0));
+        assertThrows(NumberFormatException.class, () -> csv.getInt(1));
+        assertThrows(NumberFormatException.class, () -> csv.getInt(2));
+        assertEquals(Integer.MIN_VALUE, csv.getInt(3));
+        assertThrows(IllegalArgumentException.class, () -> csv.getString(4));
+    }
+
+    private static CsvTokenizer tokenizer(String data, int bufferSize) {
+        return new CsvTokenizer(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+
+    private static List<String> fields(CsvTokenizer csv) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < csv.fieldCount(); i++) {
+            fields.add(csv.getString(i));
+        }
+        return fields;
+    }
+}
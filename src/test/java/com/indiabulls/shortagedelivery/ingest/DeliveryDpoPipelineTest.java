@@ -0,0 +1,148 @@
+package com.indiabulls.shortagedelivery.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeliveryDpoPipelineTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void loadsEveryRowThroughAllStages() throws Exception {
+        int rows = 200_000;
+        DeliveryDpoPipeline pipeline = new DeliveryDpoPipeline(4, 1000, meterRegistry);
+        SummingWriter writer = new SummingWriter();
+
+        PipelineReport report = pipeline.load(new ByteArrayInputStream(gzippedDpoFile(rows, "")), writer);
+
+        assertEquals(rows, report.getRows());
+        assertEquals(rows, writer.rows);
+        assertEquals((long) rows * (rows + 1) / 2, writer.qtyTotal);
+        assertEquals(rows / 1000, report.getStages().get("write").getItems());
+        assertTrue(report.getStages().get("read").getItems() > 0);
+        assertEquals(4, report.getStages().size());
+        assertEquals(1, meterRegistry.get("shortage.dpo.pipeline.stage").tags("stage", "parse", "state", "busy")
+                .timer().count());
+        assertEquals(0.0, meterRegistry.get("shortage.dpo.pipeline.queue.depth").tag("queue", "batches")
+                .gauge().value());
+    }
+
+    @Test
+    void parseFailureStopsTheOtherStages() throws Exception {
+        DeliveryDpoPipeline pipeline = new DeliveryDpoPipeline(2, 100, meterRegistry);
+        byte[] file = gzippedDpoFile(100_000, "2025000001,100,not-a-number,SYM1,INE000000001\n");
+
+        NumberFormatException e = assertThrows(NumberFormatException.class,
+                () -> pipeline.load(new ByteArrayInputStream(file), new SummingWriter()));
+        assertTrue(e.getMessage().contains("not-a-number"));
+    }
+
+    @Test
+    void missingHeaderIsReported() throws Exception {
+        DeliveryDpoPipeline pipeline = new DeliveryDpoPipeline(2, 100, meterRegistry);
+        byte[] file = gzip("ClntId,QtyORShrtQty\n100,1\n");
+
+        IOException e = assertThrows(IOException.class,
+                () -> pipeline.load(new ByteArrayInputStream(file), new SummingWriter()));
+        assertEquals("Missing required headers in DeliveryDPO file!", e.getMessage());
+    }
+
+    @Test
+    void emptyFileLoadsNoRows() throws Exception {
+        DeliveryDpoPipeline pipeline = new DeliveryDpoPipeline(2, 100, meterRegistry);
+
+        PipelineReport report = pipeline.load(new ByteArrayInputStream(gzip("")), new SummingWriter());
+
+        assertTrue(report.isEmptyFile());
+        assertEquals(0, report.getRows());
+    }
+
+    @Test
+    void readsEveryMemberOfAConcatenatedGzipFile() throws Exception {
+        // The first member ends exactly on a read chunk boundary, so nothing of the second one is
+        // buffered in the inflater when the first one's trailer has been read
+        String header = "SctiesSttlmTxId,ClntId,QtyORShrtQty,TckrSymb,ISIN\n";
+        byte[] first = null;
+        StringBuilder padding = new StringBuilder();
+        while (first == null || first.length % DeliveryDpoPipeline.CHUNK_SIZE != 0) {
+            padding.append('X');
+            first = storedGzip(header + "2025000001,100,1,SYM" + padding + ",INE000000001\n");
+        }
+        byte[] second = gzip("2025000002,101,2,SYM2,INE000000002\n2025000003,102,3,SYM3,INE000000003\n");
+        byte[] file = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, file, first.length, second.length);
+        DeliveryDpoPipeline pipeline = new DeliveryDpoPipeline(2, 100, meterRegistry);
+        SummingWriter writer = new SummingWriter();
+
+        PipelineReport report = pipeline.load(new ByteArrayInputStream(file), writer);
+
+        assertFalse(report.isEmptyFile());
+        assertEquals(3, report.getRows());
+        assertEquals(6, writer.qtyTotal);
+    }
+
+    private static byte[] gzippedDpoFile(int rows, String badRow) throws IOException {
+        StringBuilder sb = new StringBuilder("SctiesSttlmTxId,ClntId,QtyORShrtQty,TckrSymb,ISIN\n");
+        sb.append(badRow);
+        for (int i = 1; i <= rows; i++) {
+            sb.append("2025").append(100000000 + i).append(',').append(10000000 + i % 90000).append(',')
+                    .append(i).append(",SYM").append(i % 1800).append(",INE").append(100000000 + i % 1800).append('\n');
+        }
+        return gzip(sb.toString());
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Gzips without compressing, so the member grows by a byte per byte of content. */
+    private static byte[] storedGzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.NO_COMPRESSION);
+            }
+        }) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class SummingWriter implements DeliveryDpoWriter {
+        private long rows;
+        private long qtyTotal;
+
+        @Override
+        public void write(DeliveryDpoRow row) {
+            rows++;
+            qtyTotal += row.getQtyReceived();
+        }
+
+        @Override
+        public long finish() {
+            return rows;
+        }
+
+        @Override
+        public void close() throws SQLException {
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.indiabulls.shortagedelivery.notification.fanout;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationFanOutEngineTest {
+
+    @Test
+    void countsSentAndFailedPerChannelAndKeepsClientOrder() {
+        NotificationFanOutEngine engine = new NotificationFanOutEngine(4, 0, 0, 0);
+        try {
+            Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+            List<NotificationTask> tasks = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                String clntId = "C" + (i % 30);
+                int seq = i;
+                tasks.add(new NotificationTask(NotificationChannel.EMAIL, clntId, () -> {
+                    seen.computeIfAbsent(clntId, k -> new CopyOnWriteArrayList<>()).add(seq);
+                    return true;
+                }));
+                tasks.add(new NotificationTask(NotificationChannel.PUSH, clntId, () -> {
+                    if (seq % 10 == 0) {
+                        throw new IllegalStateException("broker down");
+                    }
+                    return seq % 10 != 1;
+                }));
+            }
+
+            FanOutReport report = engine.dispatch(tasks);
+
+            assertEquals(300, report.getChannels().get(NotificationChannel.EMAIL).getSent());
+            assertEquals(240, report.getChannels().get(NotificationChannel.PUSH).getSent());
+            assertEquals(60, report.getChannels().get(NotificationChannel.PUSH).getFailed());
+            assertEquals(540, report.getSent());
+            seen.values().forEach(order -> {
+                for (int i = 1; i < order.size(); i++) {
+                    assertTrue(order.get(i - 1) < order.get(i), "client messages out of order: " + order);
+                }
+            });
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void enforcesPerChannelRateAcrossWorkers() {
+        NotificationFanOutEngine engine = new NotificationFanOutEngine(8, 0, 0, 100);
+        try {
+            List<NotificationTask> tasks = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                tasks.add(new NotificationTask(NotificationChannel.SMS, "C" + i, () -> true));
+                tasks.add(new NotificationTask(NotificationChannel.EMAIL, "C" + i, () -> true));
+            }
+
+            FanOutReport report = engine.dispatch(tasks);
+
+            // 50 SMS at 100/s need at least ~490 ms; email is unlimited
+            assertTrue(report.getTotalMillis() >= 450, "took " + report.getTotalMillis() + " ms");
+            assertTrue(report.getChannels().get(NotificationChannel.SMS).getThroughput() <= 110);
+            assertEquals(100, report.getSent());
+        } finally {
+            engine.shutdown();
+        }
+    }
+}
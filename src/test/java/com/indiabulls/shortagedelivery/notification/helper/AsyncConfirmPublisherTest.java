@@ -0,0 +1,144 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.rabbitmq.client.AMQP;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncConfirmPublisherTest {
+
+    private static final AMQP.BasicProperties PROPS = new AMQP.BasicProperties.Builder().build();
+
+    private InMemoryConfirmChannel broker;
+
+    @AfterEach
+    void stopBroker() {
+        broker.shutdown();
+    }
+
+    @Test
+    void retriesNackedMessagesUntilConfirmed() throws Exception {
+        broker = InMemoryConfirmChannel.autoAck(0, TimeUnit.MICROSECONDS);
+        broker.nackFirstAttemptEvery(10);
+
+        try (AsyncConfirmPublisher publisher = new AsyncConfirmPublisher(broker.channel(), "ex", 100, 16, 50, 3)) {
+            List<CompletableFuture<Boolean>> outcomes = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                outcomes.add(publisher.submit("route", PROPS, ("m" + i).getBytes(StandardCharsets.UTF_8)));
+            }
+            assertTrue(publisher.flush(10, TimeUnit.SECONDS));
+            assertTrue(outcomes.stream().allMatch(CompletableFuture::join));
+
+            assertEquals(1000, publisher.getConfirmed());
+            assertEquals(100, publisher.getNacked());
+            assertEquals(100, publisher.getRetried());
+            assertEquals(0, publisher.getFailed());
+            assertEquals(1100, broker.publishedCount());
+        }
+    }
+
+    @Test
+    void stopsPublishingAtOutstandingConfirmLimit() throws Exception {
+        broker = InMemoryConfirmChannel.manualAck();
+
+        try (AsyncConfirmPublisher publisher = new AsyncConfirmPublisher(broker.channel(), "ex", 100, 16, 5, 3)) {
+            for (int i = 0; i < 20; i++) {
+                publisher.submit("route", PROPS, new byte[]{(byte) i});
+            }
+            Thread.sleep(200);
+            assertEquals(5, broker.publishedCount());
+            assertEquals(5, publisher.getOutstanding());
+
+            // Each multiple-ack frees the window for the next five
+            for (int round = 0; round < 4; round++) {
+                broker.ackPending();
+                Thread.sleep(100);
+            }
+            assertTrue(publisher.flush(5, TimeUnit.SECONDS));
+            assertEquals(20, publisher.getConfirmed());
+            assertEquals(20, broker.publishedCount());
+        }
+    }
+
+    @Test
+    void publishesUnconfirmedMessagesAgainAfterTheChannelRecovers() throws Exception {
+        broker = InMemoryConfirmChannel.manualAck();
+
+        try (AsyncConfirmPublisher publisher = new AsyncConfirmPublisher(broker.channel(), "ex", 100, 16, 5, 3)) {
+            for (int i = 0; i < 10; i++) {
+                publisher.submit("route", PROPS, new byte[]{(byte) i});
+            }
+            Thread.sleep(200);
+            assertEquals(5, publisher.getOutstanding());
+
+            // The five in flight are lost with the old channel; without giving their slots back the
+            // publisher would wait for their confirms forever
+            broker.dropAndRecover();
+            Thread.sleep(200);
+            assertEquals(5, publisher.getRetried());
+            assertEquals(5, publisher.getOutstanding());
+
+            for (int round = 0; round < 3; round++) {
+                broker.ackPending();
+                Thread.sleep(100);
+            }
+            assertTrue(publisher.flush(5, TimeUnit.SECONDS));
+            assertEquals(10, publisher.getConfirmed());
+            assertEquals(0, publisher.getFailed());
+            assertEquals(15, broker.publishedCount());
+        }
+    }
+
+    @Test
+    void waitsForAClosedChannelWithoutUsingUpRetries() throws Exception {
+        broker = InMemoryConfirmChannel.autoAck(0, TimeUnit.MICROSECONDS);
+        broker.kill();
+
+        try (AsyncConfirmPublisher publisher = new AsyncConfirmPublisher(broker.channel(), "ex", 100, 16, 50, 1)) {
+            List<CompletableFuture<Boolean>> outcomes = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                outcomes.add(publisher.submit("route", PROPS, new byte[]{(byte) i}));
+            }
+            // Backing off rather than failing every message within microseconds
+            Thread.sleep(300);
+            assertEquals(0, publisher.getFailed());
+            assertTrue(publisher.getRetried() < 50);
+
+            broker.reopen();
+            assertTrue(publisher.flush(10, TimeUnit.SECONDS));
+            assertTrue(outcomes.stream().allMatch(CompletableFuture::join));
+            assertEquals(10, publisher.getConfirmed());
+            assertEquals(0, publisher.getFailed());
+            assertEquals(10, broker.publishedCount());
+        }
+    }
+
+    @Test
+    void reportsMessagesItGivesUpOn() throws Exception {
+        broker = InMemoryConfirmChannel.autoAck(0, TimeUnit.MICROSECONDS);
+        broker.nackFirstAttemptEvery(2);
+
+        try (AsyncConfirmPublisher publisher = new AsyncConfirmPublisher(broker.channel(), "ex", 100, 16, 50, 0)) {
+            CompletableFuture<Boolean> first = publisher.submit("route", PROPS, new byte[]{1});
+            CompletableFuture<Boolean> second = publisher.submit("route", PROPS, new byte[]{2});
+
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertFalse(second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, publisher.getFailed());
+        }
+
+        // Closed: refused at once
+        AsyncConfirmPublisher closed = new AsyncConfirmPublisher(broker.channel(), "ex", 100, 16, 50, 0);
+        closed.close();
+        assertFalse(closed.submit("route", PROPS, new byte[]{3}).join());
+    }
+}
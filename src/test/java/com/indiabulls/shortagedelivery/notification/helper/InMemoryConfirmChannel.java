@@ -0,0 +1,192 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker stand-in for a confirm-mode {@link Channel}: publishes are counted and confirmed from a
+ * separate thread after a simulated round trip, like the AMQP client's connection thread would.
+ * <p>
+ * Only the methods the publishers use are implemented; anything else throws.
+ */
+public class InMemoryConfirmChannel implements InvocationHandler {
+
+    private final long ackDelayNanos;
+    private final boolean manualAcks;
+    private final ScheduledExecutorService broker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "in-memory-broker");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<ConfirmListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ShutdownListener> shutdownListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextSeqNo = new AtomicLong(1);
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Set<byte[]> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long distinctMessages;
+    private volatile int nackEvery;
+    private volatile boolean open = true;
+    private final Channel channel;
+
+    private InMemoryConfirmChannel(long ackDelayNanos, boolean manualAcks) {
+        this.ackDelayNanos = ackDelayNanos;
+        this.manualAcks = manualAcks;
+        this.channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+                new Class<?>[]{Channel.class}, this);
+    }
+
+    /** Confirms every publish after {@code ackDelay}. */
+    public static InMemoryConfirmChannel autoAck(long ackDelay, TimeUnit unit) {
+        return new InMemoryConfirmChannel(unit.toNanos(ackDelay), false);
+    }
+
+    /** Confirms only when {@link #ackPending()} is called. */
+    public static InMemoryConfirmChannel manualAck() {
+        return new InMemoryConfirmChannel(0, true);
+    }
+
+    public Channel channel() {
+        return channel;
+    }
+
+    /** Nacks the first publish of every {@code n}-th message; its retry is acked. */
+    public void nackFirstAttemptEvery(int n) {
+        this.nackEvery = n;
+    }
+
+    /** Acks everything published so far with a single multiple-ack. */
+    public void ackPending() {
+        long last = nextSeqNo.get() - 1;
+        broker.execute(() -> {
+            for (ConfirmListener listener : listeners) {
+                try {
+                    listener.handleAck(last, true);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    public long publishedCount() {
+        return published.get();
+    }
+
+    public long publishedBytes() {
+        return bytes.get();
+    }
+
+    /** Simulates the broker closing the channel. */
+    public void kill() {
+        open = false;
+    }
+
+    /** Simulates the client recovering a killed channel. */
+    public void reopen() {
+        open = true;
+    }
+
+    /**
+     * Simulates a dropped connection that the client recovers: the channel shuts down, unconfirmed
+     * publishes are never confirmed and delivery tags start over at 1.
+     */
+    public void dropAndRecover() {
+        ShutdownSignalException cause = new ShutdownSignalException(false, false, null, channel);
+        nextSeqNo.set(1);
+        for (ShutdownListener listener : shutdownListeners) {
+            listener.shutdownCompleted(cause);
+        }
+    }
+
+    public void shutdown() {
+        broker.shutdownNow();
+    }
+
+    private boolean nackFirstAttempt(byte[] body) {
+        synchronized (seen) {
+            return seen.add(body) && ++distinctMessages % nackEvery == 0;
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "confirmSelect":
+                return null;
+            case "addConfirmListener":
+                listeners.add((ConfirmListener) args[0]);
+                return null;
+            case "getNextPublishSeqNo":
+                return nextSeqNo.get();
+            case "basicPublish":
+                basicPublish((byte[]) args[args.length - 1]);
+                return null;
+            case "isOpen":
+                return open;
+            case "close":
+            case "abort":
+                open = false;
+                return null;
+            case "getChannelNumber":
+                return 1;
+            case "addShutdownListener":
+                shutdownListeners.add((ShutdownListener) args[0]);
+                return null;
+            case "removeShutdownListener":
+                shutdownListeners.remove(args[0]);
+                return null;
+            case "toString":
+                return "InMemoryConfirmChannel";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private void basicPublish(byte[] body) throws IOException {
+        if (!open) {
+            throw new IOException("channel is closed");
+        }
+        long seqNo = nextSeqNo.getAndIncrement();
+        published.incrementAndGet();
+        bytes.addAndGet(body.length);
+        if (manualAcks) {
+            return;
+        }
+        boolean nack = nackEvery > 0 && nackFirstAttempt(body);
+        // Confirms overlap like a broker round trip: each is due ackDelay after its publish
+        broker.schedule(() -> {
+            for (ConfirmListener listener : listeners) {
+                try {
+                    if (nack) {
+                        listener.handleNack(seqNo, false);
+                    } else {
+                        listener.handleAck(seqNo, false);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, ackDelayNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,66 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NotificationBatcherTest {
+
+    @Test
+    void mergesRequestsWithSameTemplateAndDataUpToMaxReceivers() {
+        NotificationBatcher batcher = new NotificationBatcher(3, false);
+        List<NotificationMessageRequest<String>> requests = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            requests.add(request("C" + i, "shortage", "SYM1"));
+        }
+        requests.add(request("C7", "shortage", "SYM2"));
+        requests.add(request("C8", "auction", "SYM1"));
+
+        List<NotificationMessageRequest<String>> batches = batcher.coalesce(requests);
+
+        assertEquals(5, batches.size());
+        assertEquals(Arrays.asList("C0", "C1", "C2"), batches.get(0).getReceivers());
+        assertEquals(Arrays.asList("C3", "C4", "C5"), batches.get(1).getReceivers());
+        assertEquals(Collections.singletonList("C6"), batches.get(2).getReceivers());
+        assertEquals("SYM2", batches.get(3).getTemplateDataJson());
+        assertEquals("auction", batches.get(4).getTemplateName());
+        batches.forEach(batch -> assertNull(batch.getReceiverTemplateData()));
+    }
+
+    @Test
+    void carriesDifferingDataPerReceiverAndNeverRepeatsAReceiver() {
+        NotificationBatcher batcher = new NotificationBatcher(100, true);
+        List<NotificationMessageRequest<String>> requests = Arrays.asList(
+                request("C1", "shortage", "SYM1"),
+                request("C2", "shortage", "SYM1"),
+                request("C3", "shortage", "SYM2"),
+                request("C1", "shortage", "SYM3"));
+
+        List<NotificationMessageRequest<String>> batches = batcher.coalesce(requests);
+
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList("C1", "C2", "C3"), batches.get(0).getReceivers());
+        assertEquals("SYM1", batches.get(0).getTemplateDataJson());
+        assertEquals(Collections.singletonMap("C3", "SYM2"), batches.get(0).getReceiverTemplateData());
+        assertEquals(Collections.singletonList("C1"), batches.get(1).getReceivers());
+        assertEquals("SYM3", batches.get(1).getTemplateDataJson());
+
+        List<NotificationBatcher.Batch<String>> withSources = batcher.batch(requests);
+        assertEquals(Arrays.asList(0, 1, 2), withSources.get(0).getSources());
+        assertEquals(Collections.singletonList(3), withSources.get(1).getSources());
+    }
+
+    private static NotificationMessageRequest<String> request(String receiver, String template, String data) {
+        return NotificationMessageRequest.<String>builder()
+                .receivers(Collections.singletonList(receiver))
+                .templateName(template)
+                .templateDataJson(data)
+                .build();
+    }
+}
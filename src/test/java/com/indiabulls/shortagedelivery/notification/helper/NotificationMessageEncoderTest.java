@@ -0,0 +1,72 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.indiabulls.shortagedelivery.notification.dto.ShortageEmailTemplateData;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class NotificationMessageEncoderTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final NotificationMessageEncoder encoder = new NotificationMessageEncoder(objectMapper);
+
+    @Test
+    void writesTheSameBytesAsTheObjectMapper() throws Exception {
+        Map<String, ShortageEmailTemplateData> receiverData = new LinkedHashMap<>();
+        receiverData.put("b@example.com", new ShortageEmailTemplateData("SYM2", 7));
+        NotificationMessageRequest<ShortageEmailTemplateData> email = NotificationMessageRequest.<ShortageEmailTemplateData>builder()
+                .receivers(Arrays.asList("a@example.com", "b@example.com"))
+                .sender("alerts@example.com")
+                .subject("Shortage in delivery of securities")
+                .templateName("shortage_email_template")
+                .templateDataJson(new ShortageEmailTemplateData("SYM1", 25))
+                .receiverTemplateData(receiverData)
+                .dataFields(NotificationSpecificFields.builder().emailDisplayName("Security Shortage").build())
+                .build();
+
+        Map<String, Object> pushData = new HashMap<>();
+        pushData.put("SYMBOL", "SYMé \"1\"");
+        pushData.put("QTY", 25);
+        NotificationMessageRequest<Map<String, Object>> push = NotificationMessageRequest.<Map<String, Object>>builder()
+                .receivers(Collections.singletonList("10000001"))
+                .templateName("shortage_push_template")
+                .templateDataJson(pushData)
+                .dataFields(NotificationSpecificFields.builder().eventType("event").build())
+                .build();
+
+        NotificationMessageRequest<Object> empty = new NotificationMessageRequest<>();
+
+        for (NotificationMessageRequest<?> request : Arrays.asList(email, push, empty, email)) {
+            assertArrayEquals(objectMapper.writeValueAsBytes(request), encoder.encode(request));
+        }
+    }
+
+    @Test
+    void encodesSmallMessagesAfterOneTooLargeToKeepTheBufferFor() throws Exception {
+        List<String> receivers = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            receivers.add("client" + i + "@example.com");
+        }
+        NotificationMessageRequest<ShortageEmailTemplateData> large = NotificationMessageRequest.<ShortageEmailTemplateData>builder()
+                .receivers(receivers)
+                .templateDataJson(new ShortageEmailTemplateData("SYM1", 1))
+                .build();
+        NotificationMessageRequest<ShortageEmailTemplateData> small = NotificationMessageRequest.<ShortageEmailTemplateData>builder()
+                .receivers(Collections.singletonList("a@example.com"))
+                .templateDataJson(new ShortageEmailTemplateData("SYM1", 1))
+                .build();
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(large), encoder.encode(large));
+        assertArrayEquals(objectMapper.writeValueAsBytes(small), encoder.encode(small));
+    }
+}
@@ -0,0 +1,123 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationSpillLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysInOrderAcrossSegmentsAndAfterReopening() throws Exception {
+        try (NotificationSpillLog spill = new NotificationSpillLog(dir, 256, 4096, 50)) {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(spill.append("route" + (i % 2), body(i)));
+            }
+            assertTrue(segments() > 1);
+            for (int i = 0; i < 5; i++) {
+                NotificationSpillLog.SpilledMessage message = spill.peek();
+                assertEquals("route" + (i % 2), message.getRoute());
+                assertEquals("message " + i, new String(message.getBody(), StandardCharsets.UTF_8));
+                spill.consume();
+            }
+            assertEquals(15, spill.pending());
+        }
+
+        // A batch spans segments and is only gone once consumed
+        try (NotificationSpillLog spill = new NotificationSpillLog(dir, 256, 4096, 50)) {
+            List<NotificationSpillLog.SpilledMessage> batch = spill.peek(8);
+            assertEquals(8, batch.size());
+            for (int i = 0; i < 8; i++) {
+                assertEquals("message " + (i + 5), new String(batch.get(i).getBody(), StandardCharsets.UTF_8));
+            }
+            spill.consume(3);
+            assertEquals("message 8", new String(spill.peek().getBody(), StandardCharsets.UTF_8));
+            assertEquals(12, spill.peek(100).size());
+        }
+
+        try (NotificationSpillLog spill = new NotificationSpillLog(dir, 256, 4096, 50)) {
+            assertEquals(12, spill.pending());
+            assertTrue(spill.append("route0", body(20)));
+            for (int i = 8; i <= 20; i++) {
+                assertEquals("message " + i, new String(spill.peek().getBody(), StandardCharsets.UTF_8));
+                spill.consume();
+            }
+            assertNull(spill.peek());
+            assertEquals(0, spill.pending());
+            // Only the segment still being written to is left
+            assertEquals(1, segments());
+        }
+    }
+
+    @Test
+    void refusesMessagesOnceFullAndIgnoresATornAppend() throws Exception {
+        try (NotificationSpillLog spill = new NotificationSpillLog(dir, 256, 512, 50)) {
+            assertFalse(spill.append("route", new byte[300]));
+            int accepted = 0;
+            while (spill.append("route", body(accepted))) {
+                accepted++;
+            }
+            assertEquals(2, segments());
+            assertEquals(accepted, spill.pending());
+        }
+
+        // Garbage after the last record, as if the process died halfway through an append
+        Path last;
+        try (Stream<Path> files = Files.list(dir)) {
+            last = files.sorted().reduce((a, b) -> b).get();
+        }
+        long pendingBefore;
+        try (NotificationSpillLog spill = new NotificationSpillLog(dir, 256, 512, 50)) {
+            pendingBefore = spill.pending();
+            while (spill.peek() != null && spill.pending() > 1) {
+                spill.consume();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(8).putInt(40).putInt(12345);
+            torn.flip();
+            channel.write(torn, lastRecordEnd(last));
+        }
+        try (NotificationSpillLog spill = new NotificationSpillLog(dir, 256, 512, 50)) {
+            assertTrue(pendingBefore > 1);
+            assertEquals(1, spill.pending());
+            assertTrue(spill.append("route", body(99)));
+            spill.consume();
+            assertEquals("message 99", new String(spill.peek().getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private long segments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static long lastRecordEnd(Path segment) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        while (position + 4 <= buffer.capacity() && buffer.getInt(position) > 0) {
+            position += 9 + buffer.getInt(position);
+        }
+        return position;
+    }
+
+    private static byte[] body(int i) {
+        return ("message " + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
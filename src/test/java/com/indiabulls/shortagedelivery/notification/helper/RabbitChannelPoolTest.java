@@ -0,0 +1,110 @@
+package com.indiabulls.shortagedelivery.notification.helper;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RabbitChannelPoolTest {
+
+    private final List<FakeChannel> opened = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean concurrentUse = new AtomicBoolean();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void publishesFromManyThreadsWithoutSharingAChannel() throws Exception {
+        RabbitChannelPool pool = new RabbitChannelPool(connection(), 4, 5000, meterRegistry);
+        ExecutorService senders = Executors.newFixedThreadPool(16);
+        CountDownLatch done = new CountDownLatch(16);
+        for (int t = 0; t < 16; t++) {
+            senders.execute(() -> {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        pool.publish("ex", "route", null, new byte[8]);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        senders.shutdown();
+
+        assertFalse(concurrentUse.get(), "a channel was used by two threads at once");
+        assertTrue(opened.size() <= 4);
+        assertEquals(8000, opened.stream().mapToLong(c -> c.published.get()).sum());
+        assertEquals(8000, meterRegistry.find("rabbitmq.channel.publish").tag("outcome", "success")
+                .counters().stream().mapToDouble(c -> c.count()).sum());
+        assertEquals(4, pool.idleCount());
+    }
+
+    @Test
+    void reopensChannelClosedByBroker() throws Exception {
+        RabbitChannelPool pool = new RabbitChannelPool(connection(), 1, 5000, meterRegistry);
+        pool.publish("ex", "route", null, new byte[1]);
+        opened.get(0).open = false;
+
+        pool.publish("ex", "route", null, new byte[1]);
+
+        assertEquals(2, opened.size());
+        assertEquals(1, opened.get(1).published.get());
+        assertEquals(1.0, meterRegistry.get("rabbitmq.channel.reopened").counter().count());
+    }
+
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("createChannel")) {
+                        FakeChannel channel = new FakeChannel();
+                        opened.add(channel);
+                        return channel.proxy;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private final class FakeChannel {
+        private final AtomicInteger inPublish = new AtomicInteger();
+        private final AtomicLong published = new AtomicLong();
+        private volatile boolean open = true;
+        private final Channel proxy = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+                new Class<?>[]{Channel.class}, (p, method, args) -> {
+                    switch (method.getName()) {
+                        case "basicPublish":
+                            if (inPublish.incrementAndGet() > 1) {
+                                concurrentUse.set(true);
+                            }
+                            Thread.yield();
+                            published.incrementAndGet();
+                            inPublish.decrementAndGet();
+                            return null;
+                        case "isOpen":
+                            return open;
+                        case "close":
+                            open = false;
+                            return null;
+                        case "getCloseReason":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
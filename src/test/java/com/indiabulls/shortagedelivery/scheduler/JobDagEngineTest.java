@@ -0,0 +1,148 @@
+package com.indiabulls.shortagedelivery.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobDagEngineTest {
+
+    @Test
+    void runsIndependentBranchesInParallelAndSkipsDependentsOfFailedSteps() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JobDagEngine engine = new JobDagEngine(4, 10, meterRegistry);
+        try {
+            // auction only finishes once dpo has started, so it must run alongside the dpo branch
+            CountDownLatch dpoStarted = new CountDownLatch(1);
+            JobRun run = engine.start("cycle", Arrays.asList(
+                    JobStep.of("dpo", () -> {
+                        dpoStarted.countDown();
+                        return "Loaded";
+                    }),
+                    JobStep.of("shrt", () -> "Error: SHRT file unreadable", "dpo"),
+                    JobStep.of("notify", () -> "Queued", "shrt"),
+                    JobStep.of("auction", () -> await(dpoStarted) ? "Processed" : "Error: dpo never started")
+            )).get().getCompletion().get(10, TimeUnit.SECONDS);
+
+            assertEquals(StepStatus.SUCCEEDED, run.getSteps().get("dpo").getStatus());
+            assertEquals(StepStatus.FAILED, run.getSteps().get("shrt").getStatus());
+            assertEquals(StepStatus.SKIPPED, run.getSteps().get("notify").getStatus());
+            assertEquals(StepStatus.SUCCEEDED, run.getSteps().get("auction").getStatus());
+            assertFalse(run.isSucceeded());
+            assertEquals(Collections.singletonList(run), engine.history());
+
+            assertEquals(1, meterRegistry.get("shortage.job.step").tags("step", "shrt", "status", "FAILED").timer().count());
+            assertEquals(1, meterRegistry.get("shortage.job.run").tags("outcome", "failure").timer().count());
+            assertEquals(0, meterRegistry.get("shortage.job.active.seconds").gauge().value());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void refusesToOverlapRunningStepsButRunsOtherJobs() throws Exception {
+        JobDagEngine engine = new JobDagEngine(2, 10, new SimpleMeterRegistry());
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            JobRun first = engine.start("cycle", Arrays.asList(
+                    JobStep.of("dpo", () -> await(release) ? "Done" : "Error: timed out"),
+                    JobStep.of("shrt", () -> "Done", "dpo"))).get();
+
+            assertFalse(engine.start("cycle", Collections.singletonList(JobStep.of("fast", () -> "Done"))).isPresent());
+            assertSame(first, engine.currentRun("cycle").get());
+            // The same work as a job of its own neither overlaps the cycle nor waits for it
+            List<JobStep> dpo = Collections.singletonList(JobStep.of("dpo", () -> "Done"));
+            assertFalse(engine.start("dpo", dpo).isPresent());
+            assertSame(first, engine.startOrJoin("dpo", dpo));
+            assertFalse(engine.currentRun("dpo").isPresent());
+            JobRun other = engine.start("auction", Collections.singletonList(JobStep.of("fast", () -> "Done"))).get();
+            other.getCompletion().get(10, TimeUnit.SECONDS);
+            assertTrue(other.isSucceeded());
+            assertFalse(engine.currentRun("auction").isPresent());
+
+            release.countDown();
+            first.getCompletion().get(10, TimeUnit.SECONDS);
+            assertTrue(first.isSucceeded());
+            assertTrue(engine.start("cycle", Collections.singletonList(JobStep.of("fast", () -> "Done"))).isPresent());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void collapsesTriggersOfTheRunningJobAndReportsProgress() throws Exception {
+        JobDagEngine engine = new JobDagEngine(2, 10, new SimpleMeterRegistry());
+        try {
+            CountDownLatch loaded = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<JobStep> steps = Collections.singletonList(JobStep.of("dpo", () -> {
+                JobProgress.stage("loading");
+                JobProgress.rows(400);
+                loaded.countDown();
+                return await(release) ? "Loaded" : "Error: timed out";
+            }));
+            JobRun first = engine.startOrJoin("dpo", steps);
+            assertTrue(await(loaded));
+
+            assertSame(first, engine.startOrJoin("dpo", steps));
+            StepResult dpo = first.getSteps().get("dpo");
+            assertEquals(Collections.singletonList("dpo"), first.getRunningSteps());
+            assertEquals("loading", dpo.getStage());
+            assertEquals(400, dpo.getRowsProcessed());
+            assertNull(dpo.getEtaSeconds());
+
+            release.countDown();
+            first.getCompletion().get(10, TimeUnit.SECONDS);
+            assertNull(dpo.getStage());
+
+            // Reported outside a step, this goes nowhere; the next run expects as many rows as the last
+            JobProgress.rows(1);
+            JobRun second = engine.startOrJoin("dpo", Collections.singletonList(JobStep.of("dpo", () -> {
+                JobProgress.rows(100);
+                return "Loaded";
+            })));
+            assertNotSame(first, second);
+            assertEquals(400, second.getSteps().get("dpo").getExpectedRows());
+            second.getCompletion().get(10, TimeUnit.SECONDS);
+            assertEquals(100, second.getSteps().get("dpo").getRowsProcessed());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsCyclesAndUnknownDependencies() {
+        JobDagEngine engine = new JobDagEngine(1, 10, new SimpleMeterRegistry());
+        try {
+            assertThrows(IllegalArgumentException.class, () -> engine.start("cycle", Arrays.asList(
+                    JobStep.of("a", () -> "", "b"),
+                    JobStep.of("b", () -> "", "a"))));
+            assertThrows(IllegalArgumentException.class, () -> engine.start("cycle", Collections.singletonList(
+                    JobStep.of("a", () -> "", "missing"))));
+            assertFalse(engine.isRunning());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}